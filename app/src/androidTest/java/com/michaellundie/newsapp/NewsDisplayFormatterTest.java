@@ -0,0 +1,125 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.widget.FrameLayout;
+
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test checking that {@link NewsDisplayFormatter} prepares each display model once,
+ * so binding a card only looks one up rather than formatting it again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsDisplayFormatterTest {
+
+    private static final int ITEM_COUNT = 100;
+
+    @Test
+    public void preparesEachModelOnce() {
+        ArrayList<NewsItem> items = articles();
+        NewsDisplayFormatter formatter =
+                new NewsDisplayFormatter(InstrumentationRegistry.getTargetContext());
+        formatter.format(items);
+
+        for (NewsItem item : items) {
+            NewsDisplayModel model = formatter.getDisplayModel(item);
+            assertSame(model, formatter.getDisplayModel(item));
+            assertEquals(item.getTitle(), model.getTitle().toString());
+            assertEquals("Author", model.getAuthors());
+        }
+    }
+
+    /**
+     * Counts the objects allocated on our thread while looking up every prepared model, as
+     * onBindViewHolder does.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void lookingUpPreparedModelsDoesNotAllocate() {
+        ArrayList<NewsItem> items = articles();
+        NewsDisplayFormatter formatter =
+                new NewsDisplayFormatter(InstrumentationRegistry.getTargetContext());
+        formatter.format(items);
+        // Once first, so any class loading and initialization isn't counted.
+        lookUpAll(formatter, items);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        NewsDisplayModel model = lookUpAll(formatter, items);
+        Debug.stopAllocCounting();
+
+        assertNotNull(model);
+        assertEquals("Allocated while looking up " + ITEM_COUNT + " models",
+                0, Debug.getThreadAllocCount());
+    }
+
+    /**
+     * Binds every prepared item to a card, as our adapter does while scrolling, and checks that
+     * none of them is formatted again.
+     */
+    @Test
+    public void bindingPreparedItemsDoesNotFormat() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final ArrayList<NewsItem> items = articles();
+        final AtomicInteger formats = new AtomicInteger();
+        final NewsDisplayFormatter formatter = new NewsDisplayFormatter(context) {
+            @Override
+            NewsDisplayModel createDisplayModel(NewsItem item) {
+                formats.incrementAndGet();
+                return super.createDisplayModel(item);
+            }
+        };
+        formatter.format(items);
+        assertEquals(ITEM_COUNT, formats.get());
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Our articles have no thumbnail, so binding never goes to the network.
+                NewsResultsViewAdapter adapter =
+                        new NewsResultsViewAdapter(items, context, formatter);
+                NewsResultsViewAdapter.ViewHolder holder =
+                        adapter.onCreateViewHolder(new FrameLayout(context), 0);
+                for (int i = 0; i < items.size(); i++) {
+                    adapter.onBindViewHolder(holder, i);
+                    assertEquals(items.get(i).getTitle(), holder.mTitleView.getText().toString());
+                }
+            }
+        });
+
+        assertEquals("Formatted while binding", ITEM_COUNT, formats.get());
+    }
+
+    /**
+     * @return the model of our last item
+     */
+    private static NewsDisplayModel lookUpAll(NewsDisplayFormatter formatter,
+                                              ArrayList<NewsItem> items) {
+        NewsDisplayModel model = null;
+        // Indexed, as an iterator would be an allocation of our own.
+        for (int i = 0; i < items.size(); i++) {
+            model = formatter.getDisplayModel(items.get(i));
+        }
+        return model;
+    }
+
+    private static ArrayList<NewsItem> articles() {
+        ArrayList<NewsItem> items = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items.add(new NewsItem("id" + i, "Title " + i, new String[]{"Author"},
+                    "Technology", i * 60000L, "", "https://example.com/" + i, i));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,100 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test checking that {@link NewsResultsViewAdapter} recycles its cards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsResultsViewAdapterTest {
+
+    private static final int ITEM_COUNT = 1000;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    /** Cards RecyclerView may inflate on top of a screenful, e.g. for its view cache. */
+    private static final int EXTRA_INFLATIONS = 5;
+
+    private int mInflations = 0;
+    private int mFirstScreenInflations;
+    private int mLastVisiblePosition;
+
+    @Test
+    public void inflationsStayBoundedWhileScrolling() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final ArrayList<NewsItem> items = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            // No thumbnail, so we never go to the network.
+            items.add(new NewsItem("id" + i, "Title " + i, new String[]{"Author"},
+                    "Technology", i * 60000L, "", "https://example.com/" + i, i));
+        }
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final NewsDisplayFormatter formatter = new NewsDisplayFormatter(context);
+                NewsResultsViewAdapter adapter = new NewsResultsViewAdapter(items, context,
+                        formatter) {
+                    @NonNull
+                    @Override
+                    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent,
+                                                         int viewType) {
+                        mInflations++;
+                        return super.onCreateViewHolder(parent, viewType);
+                    }
+                };
+                RecyclerView recyclerView = new RecyclerView(context);
+                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+                recyclerView.setLayoutManager(layoutManager);
+                recyclerView.setAdapter(adapter);
+                recyclerView.measure(
+                        View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                recyclerView.layout(0, 0, WIDTH, HEIGHT);
+                mFirstScreenInflations = mInflations;
+
+                // A third of a screen at a time, all the way to the end of our list.
+                for (int step = 0; step < ITEM_COUNT
+                        && layoutManager.findLastVisibleItemPosition() < ITEM_COUNT - 1; step++) {
+                    recyclerView.scrollBy(0, HEIGHT / 3);
+                    assertBoundToTheirRows(recyclerView, items, formatter);
+                }
+                mLastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+            }
+        });
+
+        assertEquals(ITEM_COUNT - 1, mLastVisiblePosition);
+        assertTrue("Inflated " + mInflations + " cards for " + mFirstScreenInflations
+                        + " on screen", mInflations <= mFirstScreenInflations + EXTRA_INFLATIONS);
+    }
+
+    /**
+     * Every card on screen shows the item at its own position, however often it was recycled.
+     */
+    private static void assertBoundToTheirRows(RecyclerView recyclerView,
+                                               ArrayList<NewsItem> items,
+                                               NewsDisplayFormatter formatter) {
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            NewsResultsViewAdapter.ViewHolder holder = (NewsResultsViewAdapter.ViewHolder)
+                    recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            assertSame(items.get(holder.getAdapterPosition()), holder.mItem);
+            assertEquals(formatter.getDisplayModel(holder.mItem).getTitle().toString(),
+                    holder.mTitleView.getText().toString());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.michaellundie.newsapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
+
+import com.michaellundie.newsapp.engine.FeedDates;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A local SQLite store of the articles we have received. Articles are keyed by the topic (the
+ * search query) they were received for and their Guardian id, and indexed by publication date,
+ * so a refresh only needs to ask the API for articles newer than the newest one we already have
+ * for each topic.
+ */
+public class ArticleStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "articles.db";
+    private static final int DATABASE_VERSION = 3;
+    /** The number of articles we keep. Older articles are removed after each sync. */
+    private static final int MAX_STORED_ARTICLES = 500;
+    /** Separates author names within the authors column. */
+    private static final String AUTHOR_SEPARATOR = "\u001F";
+
+    private static final String TABLE_ARTICLES = "articles";
+    private static final String COLUMN_TOPIC = "topic";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_AUTHORS = "authors";
+    private static final String COLUMN_SECTION = "section";
+    private static final String COLUMN_PUBLISHED = "published";
+    private static final String COLUMN_THUMBNAIL = "thumbnail";
+    private static final String COLUMN_URL = "url";
+
+    private static final String[] ARTICLE_COLUMNS = {COLUMN_ID, COLUMN_TITLE, COLUMN_AUTHORS,
+            COLUMN_SECTION, COLUMN_PUBLISHED, COLUMN_THUMBNAIL, COLUMN_URL};
+
+    private static ArticleStore instance;
+
+    public static synchronized ArticleStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ArticleStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ArticleStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARTICLES + " ("
+                + COLUMN_TOPIC + " TEXT NOT NULL, "
+                + COLUMN_ID + " TEXT NOT NULL, "
+                + COLUMN_TITLE + " TEXT, "
+                + COLUMN_AUTHORS + " TEXT, "
+                + COLUMN_SECTION + " TEXT, "
+                // Epoch milliseconds, as held by NewsItem.
+                + COLUMN_PUBLISHED + " INTEGER NOT NULL, "
+                + COLUMN_THUMBNAIL + " TEXT, "
+                + COLUMN_URL + " TEXT, "
+                + "PRIMARY KEY (" + COLUMN_TOPIC + ", " + COLUMN_ID + "))");
+        db.execSQL("CREATE INDEX idx_articles_published ON " + TABLE_ARTICLES
+                + " (" + COLUMN_PUBLISHED + " DESC)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only holds a copy of API data, so it is safe to start again.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ARTICLES);
+        onCreate(db);
+    }
+
+    /**
+     * @param topic the topic to check
+     * @return the publication date of the newest article we hold for the topic, as an API
+     * (ISO 8601) date, or null if we hold none.
+     */
+    public String getNewestPublicationDate(String topic) {
+        Cursor cursor = getReadableDatabase().query(TABLE_ARTICLES,
+                new String[]{"MAX(" + COLUMN_PUBLISHED + ")"}, COLUMN_TOPIC + " = ?",
+                new String[]{topic}, null, null, null);
+        try {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                return null;
+            }
+            return FeedDates.formatIso(cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Inserts new articles and updates the ones we already hold, then trims the oldest
+     * articles from the store.
+     * @param topic the topic the articles were received for
+     * @param articles articles received from the API
+     */
+    public void mergeArticles(String topic, List<NewsItem> articles) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (NewsItem article : articles) {
+                if (TextUtils.isEmpty(article.getId())) {
+                    // We can't merge an article without an id.
+                    continue;
+                }
+                values.clear();
+                values.put(COLUMN_TOPIC, topic);
+                values.put(COLUMN_ID, article.getId());
+                values.put(COLUMN_TITLE, article.getTitle());
+                values.put(COLUMN_AUTHORS, TextUtils.join(AUTHOR_SEPARATOR, article.getAuthors()));
+                values.put(COLUMN_SECTION, article.getSection());
+                values.put(COLUMN_PUBLISHED, article.getPublishedMillis());
+                values.put(COLUMN_THUMBNAIL, article.getThumbnailURL());
+                values.put(COLUMN_URL, article.getArticleURL());
+                db.insertWithOnConflict(TABLE_ARTICLES, null, values,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.execSQL("DELETE FROM " + TABLE_ARTICLES + " WHERE rowid NOT IN ("
+                    + "SELECT rowid FROM " + TABLE_ARTICLES
+                    + " ORDER BY " + COLUMN_PUBLISHED + " DESC LIMIT " + MAX_STORED_ARTICLES + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param topics the topics to return articles of
+     * @param limit the maximum number of articles to return
+     * @return our newest articles of any of the topics, newest first. An article held for more
+     * than one of the topics is only returned once.
+     */
+    public ArrayList<NewsItem> getNewestArticles(Collection<String> topics, int limit) {
+        ArrayList<NewsItem> articles = new ArrayList<>();
+        StringBuilder selection = new StringBuilder(COLUMN_TOPIC).append(" IN (");
+        for (int i = 0; i < topics.size(); i++) {
+            selection.append(i == 0 ? "?" : ", ?");
+        }
+        selection.append(')');
+        Cursor cursor = getReadableDatabase().query(TABLE_ARTICLES, ARTICLE_COLUMNS,
+                selection.toString(), topics.toArray(new String[topics.size()]), COLUMN_ID, null,
+                COLUMN_PUBLISHED + " DESC", String.valueOf(limit));
+        try {
+            while (cursor.moveToNext()) {
+                String authors = cursor.getString(2);
+                String[] authorList = TextUtils.isEmpty(authors)
+                        ? null : TextUtils.split(authors, AUTHOR_SEPARATOR);
+                articles.add(new NewsItem(cursor.getString(0), cursor.getString(1), authorList,
+                        cursor.getString(3), cursor.getLong(4), cursor.getString(5),
+                        cursor.getString(6), articles.size()));
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+}
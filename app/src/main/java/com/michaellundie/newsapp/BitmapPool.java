@@ -0,0 +1,115 @@
+package com.michaellundie.newsapp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A small pool of bitmaps which have been evicted from our {@link CacheManager}. Their memory is
+ * handed back to {@link BitmapFactory} through {@link BitmapFactory.Options#inBitmap}, so
+ * decoding a new thumbnail doesn't need a fresh allocation (and the GC pause that comes with it).
+ */
+public class BitmapPool {
+
+    private final int mMaxBytes;
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private int mSize = 0;
+
+    BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Offer a bitmap for reuse. Bitmaps which can't be decoded into are ignored.
+     * @param bitmap a bitmap which is no longer referenced by our cache, or displayed
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        int byteCount = byteCountOf(bitmap);
+        if (byteCount > mMaxBytes) {
+            return;
+        }
+        mBitmaps.addFirst(bitmap);
+        mSize += byteCount;
+        // Drop the oldest bitmaps once we go over our budget.
+        while (mSize > mMaxBytes) {
+            mSize -= byteCountOf(mBitmaps.removeLast());
+        }
+    }
+
+    /**
+     * Find a pooled bitmap which can hold the image described by our decode options.
+     * @param options decode options, after the bounds and inSampleSize have been set
+     * @return a bitmap which can be used as inBitmap, or null if there is no suitable candidate
+     */
+    public synchronized Bitmap get(BitmapFactory.Options options) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap candidate = iterator.next();
+            if (canUseForInBitmap(candidate, options)) {
+                iterator.remove();
+                mSize -= byteCountOf(candidate);
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void clear() {
+        mBitmaps.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Drop our oldest bitmaps until we hold no more than the given size.
+     * @param maxBytes the size to trim to, in bytes
+     */
+    public synchronized void trimToSize(int maxBytes) {
+        while (mSize > maxBytes && !mBitmaps.isEmpty()) {
+            mSize -= byteCountOf(mBitmaps.removeLast());
+        }
+    }
+
+    public int getMaxSize() {
+        return mMaxBytes;
+    }
+
+    /**
+     * Reuse rules from https://developer.android.com/topic/performance/graphics/manage-memory
+     * From KitKat any bitmap that is large enough can be reused, before that the dimensions must
+     * match exactly and the image can't be downsampled.
+     */
+    private static boolean canUseForInBitmap(Bitmap candidate, BitmapFactory.Options options) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int sampleSize = Math.max(1, options.inSampleSize);
+            int width = options.outWidth / sampleSize;
+            int height = options.outHeight / sampleSize;
+            int byteCount = width * height * bytesPerPixel(candidate.getConfig());
+            return byteCount <= candidate.getAllocationByteCount();
+        }
+        return candidate.getWidth() == options.outWidth
+                && candidate.getHeight() == options.outHeight
+                && options.inSampleSize <= 1;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+
+    private static int byteCountOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+}
@@ -1,59 +1,205 @@
 package com.michaellundie.newsapp;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.drawable.BitmapDrawable;
-import android.util.Log;
-import android.util.LruCache;
+
+import com.michaellundie.newsapp.engine.ConcurrentLruCache;
+import com.michaellundie.newsapp.engine.Metrics;
+
+import java.io.IOException;
 
 /**
  * Creates a cache manager allowing us to handle multiple images in cache and use them in
- * conjunction with a recycler viewer.
+ * conjunction with a recycler viewer. Entries are keyed by thumbnail URL, so they remain valid
+ * across refreshes and settings changes, whatever position an article ends up in.
+ * Our memory budget for decoded images is a share of the app's heap (the device's memory
+ * class), split between this cache and the {@link BitmapPool} its evicted bitmaps go to once
+ * no view displays them (see {@link RecyclingBitmapDrawable}). We give memory back when the
+ * system asks us to, see {@link #onTrimMemory(int)}.
+ * Safe to use from any thread: our image loader's workers decode into it concurrently, and
+ * {@link #getOrLoad} makes sure an image is only ever decoded once at a time.
  * Cache Manager code from https://stackoverflow.com/a/22855962
  */
-public class CacheManager {
+public class CacheManager implements ComponentCallbacks2 {
 
-    private static final String LOG_TAG = CacheManager.class.getSimpleName();
-    private LruCache<Integer, BitmapDrawable> mMemoryCache;
+    /** Decoded images may use 1/HEAP_FRACTION of our app's heap. */
+    private static final int HEAP_FRACTION = 8;
+    /** 1/POOL_FRACTION of our image budget is held by our bitmap pool, the rest by our cache. */
+    private static final int POOL_FRACTION = 4;
+    /** The memory class we assume if the system won't tell us, in megabytes. */
+    private static final int DEFAULT_MEMORY_CLASS = 32;
+    /** Our image loader's workers plus the main thread. */
+    private static final int CONCURRENCY_LEVEL = 4;
+    /**
+     * The smallest share of our cache one of its segments may have, in bytes. A full width card
+     * thumbnail on a high density phone is around 1MB, and a segment must hold a few of them, or
+     * they'd be evicted as soon as they're cached. Small budgets get fewer segments instead.
+     */
+    private static final int MIN_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final Metrics.Counter HITS = Metrics.counter("image.memoryCache.hits");
+    private static final Metrics.Counter MISSES = Metrics.counter("image.memoryCache.misses");
+    private final ConcurrentLruCache<String, BitmapDrawable> mMemoryCache;
+    private final BitmapPool mBitmapPool;
     private static CacheManager instance;
 
-    public static CacheManager getInstance() {
+    public static synchronized CacheManager getInstance(Context context) {
         if(instance == null) {
             // If instance is null create a new instance
-            instance = new CacheManager();
-            instance.init();
+            Context applicationContext = context.getApplicationContext();
+            instance = new CacheManager(getImageBudget(applicationContext));
+            applicationContext.registerComponentCallbacks(instance);
         }
         return instance;
     }
 
-    private void init() {
-        // Set up LruCache and assign our maximum cache size
-        mMemoryCache = new LruCache<Integer, BitmapDrawable>(8 * 1024 * 1024) {
+    /**
+     * @return the number of bytes our decoded images may use on this device
+     */
+    static int getImageBudget(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager != null
+                ? activityManager.getMemoryClass() : DEFAULT_MEMORY_CLASS;
+        return memoryClass * 1024 * 1024 / HEAP_FRACTION;
+    }
+
+    /**
+     * @param budgetBytes the memory our cache and bitmap pool may use together
+     */
+    CacheManager(int budgetBytes) {
+        int poolBytes = budgetBytes / POOL_FRACTION;
+        // Evicted bitmaps are kept in a small pool, so their memory can be decoded into again
+        mBitmapPool = new BitmapPool(poolBytes);
+        // Set up our cache, striped so concurrent decoders rarely contend for a lock, as long
+        // as our budget leaves each stripe room for a few thumbnails
+        mMemoryCache = new ConcurrentLruCache<String, BitmapDrawable>(budgetBytes - poolBytes,
+                CONCURRENCY_LEVEL, MIN_SEGMENT_BYTES) {
             @Override
-            protected int sizeOf(Integer key, BitmapDrawable bitmapDrawable) {
-                // The cache size will be measured in kilobytes rather than
-                // number of items.
+            protected int sizeOf(String key, BitmapDrawable bitmapDrawable) {
+                // The cache size is measured in bytes rather than number of items.
                 return bitmapDrawable.getBitmap().getByteCount() ;
             }
             @Override
-            protected void entryRemoved(boolean evicted, Integer key, BitmapDrawable oldValue, BitmapDrawable newValue) {
+            protected void entryRemoved(boolean evicted, String key, BitmapDrawable oldValue, BitmapDrawable newValue) {
                 super.entryRemoved(evicted, key, oldValue, newValue);
+                // Being least recently used doesn't mean no view shows it. Our drawable
+                // only goes to our pool once no one displays it either.
+                setIsCached(oldValue, false);
             }
         };
     }
 
-    public void addBitmapToMemoryCache(Integer key, BitmapDrawable bitmapDrawable) {
-        if (getBitmapFromMemCache(key) == null) {
-            // Not using 'recycling drawables as was in the original code base
-            mMemoryCache.put(key, bitmapDrawable);
+    public void addBitmapToMemoryCache(String key, BitmapDrawable bitmapDrawable) {
+        // Counted as cached before it's added, as it may be evicted straight away.
+        setIsCached(bitmapDrawable, true);
+        // Checked and added in one step, so racing callers can't both add.
+        if (mMemoryCache.putIfAbsent(key, bitmapDrawable) != null) {
+            setIsCached(bitmapDrawable, false);
         }
     }
 
-    public BitmapDrawable getBitmapFromMemCache(Integer key) {
+    /**
+     * Returns the cached image for the key, or loads it. While an image is being loaded other
+     * callers asking for it wait for that load, so no image is decoded twice.
+     * @param key the image URL
+     * @param loader decodes the image if we don't hold it. Runs on the calling thread.
+     * @return the image, or null if it couldn't be loaded
+     */
+    public BitmapDrawable getOrLoad(String key,
+            final ConcurrentLruCache.Loader<String, BitmapDrawable> loader) throws IOException {
+        return mMemoryCache.getOrLoad(key, new ConcurrentLruCache.Loader<String, BitmapDrawable>() {
+            @Override
+            public BitmapDrawable load(String key) throws IOException {
+                BitmapDrawable bitmapDrawable = loader.load(key);
+                // A loaded drawable is always cached. Counted before, as it may be evicted
+                // straight away.
+                setIsCached(bitmapDrawable, true);
+                return bitmapDrawable;
+            }
+        });
+    }
+
+    public BitmapDrawable getBitmapFromMemCache(String key) {
         if(key ==null) {
-            Log.i(LOG_TAG, "TEST: Key is null, null will be returned.");
+            return null;
+        }
+        BitmapDrawable bitmapDrawable = mMemoryCache.get(key);
+        if (bitmapDrawable != null) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+        }
+        return bitmapDrawable;
+    }
+    /**
+     * @return true if we hold an image for the key. Unlike {@link #getBitmapFromMemCache},
+     * not counted as a cache hit or miss.
+     */
+    public boolean isCached(String key) {
+        return key != null && mMemoryCache.get(key) != null;
+    }
+
+    /**
+     * @return the maximum size of our cache, in bytes
+     */
+    public int getMaxSize() {
+        return mMemoryCache.maxSize();
+    }
+
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    private static void setIsCached(BitmapDrawable bitmapDrawable, boolean isCached) {
+        if (bitmapDrawable instanceof RecyclingBitmapDrawable) {
+            ((RecyclingBitmapDrawable) bitmapDrawable).setIsCached(isCached);
         }
-        return mMemoryCache.get(key);
     }
+
     public void clear() {
         mMemoryCache.evictAll();
     }
-}
\ No newline at end of file
+
+    /**
+     * Gives memory back according to how much pressure the system is under. Pooled bitmaps
+     * are only there to save an allocation, so they go first. Then half our cache goes while
+     * memory is getting low or our UI is hidden, and all of it once memory is critical or we
+     * are likely to be killed anyway. Images can always be decoded again from our disk cache.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            evictWithoutPooling(-1);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            evictWithoutPooling(mMemoryCache.maxSize() / 2);
+        } else {
+            mBitmapPool.trimToSize(mBitmapPool.getMaxSize() / 2);
+        }
+    }
+
+    /**
+     * Trims our cache and empties our pool. Trimmed images would go to our pool as they're
+     * evicted, so we hold our pool's lock throughout: no decoder can take one of them before
+     * the pool is cleared.
+     * @param maxBytes the size to trim our cache to, or -1 to evict everything
+     */
+    private void evictWithoutPooling(int maxBytes) {
+        synchronized (mBitmapPool) {
+            mMemoryCache.trimToSize(maxBytes);
+            mBitmapPool.clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Our images don't depend on the configuration.
+    }
+}
@@ -0,0 +1,187 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.michaellundie.newsapp.engine.CacheKeys;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded, least recently used disk cache for downloaded thumbnails. Sits behind the
+ * in-memory {@link CacheManager}, so images survive a refresh or a cold start of the app.
+ * Files are stored in the app cache directory, named by a hash of the thumbnail URL.
+ */
+public class DiskThumbnailCache {
+
+    private static final String LOG_TAG = DiskThumbnailCache.class.getSimpleName();
+    private static final String CACHE_DIRECTORY_NAME = "thumbnails";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final long MAX_CACHE_BYTES = 20 * 1024 * 1024;
+
+    private static DiskThumbnailCache instance;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    /** Our LRU journal. Access ordered map of file name to file size (in bytes). */
+    private final LinkedHashMap<String, Long> mJournal = new LinkedHashMap<>(32, 0.75f, true);
+    private long mSize = 0;
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+
+    public static synchronized DiskThumbnailCache getInstance(Context context) {
+        if (instance == null) {
+            // If instance is null create a new instance in our application cache directory
+            instance = new DiskThumbnailCache(
+                    new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY_NAME),
+                    MAX_CACHE_BYTES);
+            instance.init();
+        }
+        return instance;
+    }
+
+    private DiskThumbnailCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Rebuilds the journal from the files already on disk. Files are added oldest first, using
+     * their last modified time (which we update on every hit) as the access order.
+     */
+    private synchronized void init() {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Unable to create thumbnail cache directory.");
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                // Left over from an interrupted download.
+                deleteFile(file);
+            } else {
+                mJournal.put(file.getName(), file.length());
+                mSize += file.length();
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * Look up a thumbnail on disk.
+     * @param url the URL of the thumbnail
+     * @return the cached image file, or null if we have not stored this thumbnail.
+     */
+    public synchronized File get(String url) {
+        String key = CacheKeys.keyFor(url);
+        if (mJournal.get(key) != null) {
+            File file = new File(mDirectory, key);
+            if (file.exists()) {
+                mHitCount++;
+                // Persist our access order for the next cold start.
+                file.setLastModified(System.currentTimeMillis());
+                return file;
+            }
+            // The file was removed behind our back (the system may clear our cache dir).
+            mSize -= mJournal.remove(key);
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Stores the downloaded thumbnail on disk, evicting the least recently used files if we go
+     * over our size budget.
+     * @param url the URL of the thumbnail
+     * @param inputStream the thumbnail data. Not closed by this method.
+     * @return the cached image file
+     */
+    public File put(String url, InputStream inputStream) throws IOException {
+        String key = CacheKeys.keyFor(url);
+        // Write to a temporary file first, so a failed download never leaves a partial image.
+        File tempFile = new File(mDirectory, key + TEMP_FILE_SUFFIX);
+        OutputStream outputStream = new FileOutputStream(tempFile);
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            outputStream.close();
+            deleteFile(tempFile);
+            throw e;
+        }
+        outputStream.close();
+
+        synchronized (this) {
+            File file = new File(mDirectory, key);
+            if (!tempFile.renameTo(file)) {
+                deleteFile(tempFile);
+                throw new IOException("Unable to commit thumbnail to disk cache.");
+            }
+            Long previousSize = mJournal.put(key, file.length());
+            if (previousSize != null) {
+                mSize -= previousSize;
+            }
+            mSize += file.length();
+            trimToSize();
+            return file;
+        }
+    }
+
+    /**
+     * Removes a thumbnail from the cache, for example if the stored file could not be decoded.
+     * @param url the URL of the thumbnail
+     */
+    public synchronized void remove(String url) {
+        String key = CacheKeys.keyFor(url);
+        Long size = mJournal.remove(key);
+        if (size != null) {
+            mSize -= size;
+            deleteFile(new File(mDirectory, key));
+        }
+    }
+
+    public synchronized int getHitCount() { return mHitCount; }
+
+    public synchronized int getMissCount() { return mMissCount; }
+
+    /**
+     * Evicts least recently used files until we are within our size budget.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mJournal.entrySet().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            mSize -= eldest.getValue();
+            deleteFile(new File(mDirectory, eldest.getKey()));
+            iterator.remove();
+        }
+    }
+
+    private void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(LOG_TAG, "Unable to delete cache file " + file.getName());
+        }
+    }
+}
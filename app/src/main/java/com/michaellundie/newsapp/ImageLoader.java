@@ -0,0 +1,454 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.TextUtils;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.michaellundie.newsapp.engine.ConcurrentLruCache;
+import com.michaellundie.newsapp.engine.Metrics;
+import com.michaellundie.newsapp.engine.Transport;
+import com.michaellundie.newsapp.engine.TransportResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads thumbnails on a small, bounded pool of worker threads. The most recently requested
+ * images are loaded first, so the rows a user is currently looking at take priority over rows
+ * that have already scrolled past. Requests for the same URL share a single download, and a
+ * request is cancelled once no view is waiting for it anymore.
+ * While our list is flinging we can be {@link #pause() paused}: requests made meanwhile (for
+ * rows which will likely be off screen a few frames later) are held back. Most are cancelled
+ * as their rows are recycled, and once the list settles we {@link #resume(Collection) resume}
+ * the rest, those for the rows still visible first.
+ * Images can also be {@link #prefetch prefetched} into our cache, before any view needs them.
+ *
+ * All public methods must be called from the main thread.
+ */
+public class ImageLoader {
+
+    private static final String LOG_TAG = ImageLoader.class.getSimpleName();
+    private static final int WORKER_COUNT = 3;
+    private static final Metrics.Histogram DECODE_TIME = Metrics.histogram("image.decode", "us");
+    private static final Metrics.Counter DISK_HITS = Metrics.counter("image.diskCache.hits");
+    private static final Metrics.Counter DISK_MISSES = Metrics.counter("image.diskCache.misses");
+    private static final Metrics.Counter DEFERRED = Metrics.counter("image.requests.deferred");
+    private static final Metrics.Counter PREFETCHED = Metrics.counter("image.requests.prefetched");
+
+    private static ImageLoader instance;
+
+    private final Context mContext;
+    private final CacheManager mCacheManager;
+    private final DiskThumbnailCache mDiskCache;
+    private final Transport mTransport;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor;
+    /** Requests which have not completed yet, keyed by URL. */
+    private final Map<String, Request> mInFlight = new HashMap<>();
+    /** The request each view is currently waiting on. */
+    private final Map<ImageView, Request> mTargets = new HashMap<>();
+    /** Requests held back while we're paused, oldest first. Always empty while we're not. */
+    private final List<Request> mDeferred = new ArrayList<>();
+    /** Prefetch requests which have not completed yet, and no view is waiting on. */
+    private final Set<Request> mPrefetches = new HashSet<>();
+    private boolean mPaused = false;
+
+    public interface Listener {
+        /**
+         * @param bitmapDrawable the image. A {@link RecyclingBitmapDrawable} must be retained
+         *                       here if it will be displayed.
+         */
+        void onImageLoaded(BitmapDrawable bitmapDrawable);
+        void onImageLoadError();
+    }
+
+    public static ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageLoader(Context context) {
+        mContext = context;
+        mCacheManager = CacheManager.getInstance(context);
+        mDiskCache = DiskThumbnailCache.getInstance(context);
+        mTransport = QueryUtils.getTransport();
+        mExecutor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 30, TimeUnit.SECONDS,
+                new LifoBlockingDeque(), new WorkerThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Load an image into the given view. Any earlier request made for this view is cancelled.
+     * @param url the URL of the image
+     * @param targetWidth the width (in pixels) the image will be displayed at
+     * @param targetHeight the height (in pixels) the image will be displayed at
+     * @param target the view the image is destined for. Used to track and cancel the request.
+     * @param listener receives the result on the main thread
+     */
+    public void load(String url, int targetWidth, int targetHeight, ImageView target,
+                     Listener listener) {
+        cancel(target);
+        // Joining a request held back by a pause is safe: we only hold requests back while
+        // paused, and resume() starts all of them.
+        Request request = mInFlight.get(url);
+        if (request == null) {
+            // No one is loading this URL yet. Start a new download, unless we're paused.
+            request = new Request(url, targetWidth, targetHeight);
+            mInFlight.put(url, request);
+            if (mPaused) {
+                DEFERRED.increment();
+                mDeferred.add(request);
+            } else {
+                mExecutor.execute(request);
+            }
+        }
+        // A prefetch which a view now waits on is an ordinary request from here on.
+        mPrefetches.remove(request);
+        request.listeners.put(target, listener);
+        mTargets.put(target, request);
+    }
+
+    /**
+     * Stop delivering a result to the given view, e.g. when its ViewHolder is recycled. If no
+     * other view is waiting on the same image, the download is cancelled too.
+     * @param target the view the image was destined for
+     */
+    public void cancel(ImageView target) {
+        Request request = mTargets.remove(target);
+        if (request == null) {
+            return;
+        }
+        request.listeners.remove(target);
+        if (request.listeners.isEmpty()) {
+            request.cancelled = true;
+            mInFlight.remove(request.url);
+            // Drop it from the queue if it hasn't started yet.
+            if (!mDeferred.remove(request)) {
+                mExecutor.remove(request);
+            }
+        }
+    }
+
+    /**
+     * Load an image into our cache before any view needs it, e.g. for rows about to scroll into
+     * view. A view asking for the image meanwhile simply waits for this request.
+     * Ignored while we're paused, and for images we hold or are loading already.
+     * @param url the URL of the image
+     * @param targetWidth the width (in pixels) the image will be displayed at
+     * @param targetHeight the height (in pixels) the image will be displayed at
+     * @return true if a new request was started
+     */
+    public boolean prefetch(String url, int targetWidth, int targetHeight) {
+        if (mPaused || TextUtils.isEmpty(url) || mInFlight.containsKey(url) || mCacheManager.isCached(url)) {
+            return false;
+        }
+        Request request = new Request(url, targetWidth, targetHeight);
+        mInFlight.put(url, request);
+        mPrefetches.add(request);
+        PREFETCHED.increment();
+        mExecutor.execute(request);
+        return true;
+    }
+
+    /**
+     * @return the number of prefetch requests which haven't completed yet
+     */
+    public int getPrefetchCount() {
+        return mPrefetches.size();
+    }
+
+    /**
+     * Cancel the prefetch requests which haven't started yet, e.g. when the user changes
+     * scroll direction. Those already downloading are left to finish.
+     */
+    public void cancelPrefetches() {
+        Iterator<Request> iterator = mPrefetches.iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            // Only true for requests still waiting in our queue.
+            if (mExecutor.remove(request)) {
+                iterator.remove();
+                request.cancelled = true;
+                mInFlight.remove(request.url);
+            }
+        }
+    }
+
+    /**
+     * Hold back new requests, and any that haven't started yet, e.g. while our list is
+     * flinging. Downloads and decodes which have already started are left to finish.
+     * Prefetches which haven't started are cancelled, they were for rows we've flung past.
+     */
+    public void pause() {
+        if (mPaused) {
+            return;
+        }
+        mPaused = true;
+        cancelPrefetches();
+        for (Request request : mInFlight.values()) {
+            // Only true for requests still waiting in our queue.
+            if (mExecutor.remove(request)) {
+                DEFERRED.increment();
+                mDeferred.add(request);
+            }
+        }
+    }
+
+    /**
+     * Start all the held back requests, those for the given views first. Requests for views
+     * recycled meanwhile were already cancelled. The others are for views RecyclerView keeps
+     * just off screen, which may scroll back into view without being bound again, so they
+     * are loaded too, after the visible ones.
+     * @param visibleTargets the views the user can currently see
+     */
+    public void resume(Collection<ImageView> visibleTargets) {
+        mPaused = false;
+        List<Request> visible = new ArrayList<>();
+        for (Request request : mDeferred) {
+            if (Collections.disjoint(request.listeners.keySet(), visibleTargets)) {
+                mExecutor.execute(request);
+            } else {
+                visible.add(request);
+            }
+        }
+        mDeferred.clear();
+        // Our queue hands out the newest task first, so these run before the others.
+        for (Request request : visible) {
+            mExecutor.execute(request);
+        }
+    }
+
+    /**
+     * Delivers the result of a request to every view still waiting on it.
+     */
+    private void deliver(Request request, BitmapDrawable bitmapDrawable) {
+        if (mInFlight.get(request.url) == request) {
+            mInFlight.remove(request.url);
+        }
+        mPrefetches.remove(request);
+        if (!request.cancelled) {
+            for (Map.Entry<ImageView, Listener> entry : request.listeners.entrySet()) {
+                mTargets.remove(entry.getKey());
+                if (bitmapDrawable != null) {
+                    entry.getValue().onImageLoaded(bitmapDrawable);
+                } else {
+                    entry.getValue().onImageLoadError();
+                }
+            }
+            request.listeners.clear();
+        }
+        // Our listeners have retained it if they display it. We no longer need to.
+        if (bitmapDrawable instanceof RecyclingBitmapDrawable) {
+            ((RecyclingBitmapDrawable) bitmapDrawable).release();
+        }
+    }
+
+    /**
+     * Downloads (or reads from our disk cache) and decodes a single image.
+     * Runs on a worker thread.
+     */
+    private Bitmap loadBitmap(String url, int targetWidth, int targetHeight) {
+        Bitmap bitmap = null;
+        try {
+            // Check our disk cache before going to the network.
+            File cachedFile = mDiskCache.get(url);
+            if (cachedFile != null) {
+                DISK_HITS.increment();
+            } else {
+                DISK_MISSES.increment();
+                // Our shared transport reuses the connections of earlier downloads.
+                final TransportResponse response = mTransport.get(url, null, null);
+                try {
+                    if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+                        throw new IOException("Error response code: " + response.getStatusCode());
+                    }
+                    cachedFile = mDiskCache.put(url, response.body());
+                } finally {
+                    response.close();
+                }
+            }
+            long decodeStart = Metrics.startTimer();
+            bitmap = decodeSampledBitmap(cachedFile.getPath(), targetWidth, targetHeight,
+                    mCacheManager.getBitmapPool());
+            DECODE_TIME.recordMicrosSince(decodeStart);
+            if (bitmap == null) {
+                // The stored file is not a valid image, don't keep serving it.
+                mDiskCache.remove(url);
+            }
+        } catch (final MalformedURLException malformedUrlException) {
+            Log.e(LOG_TAG, "There was a problem with the URL.", malformedUrlException);
+        } catch (final IOException ioException) {
+            Log.e(LOG_TAG, "There was a problem loading the requested image.", ioException);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes an image no larger than it needs to be to fill our target size (we display
+     * thumbnails center cropped), reusing a pooled bitmap where possible.
+     * Code adapted from: https://developer.android.com/topic/performance/graphics/load-bitmap
+     */
+    private static Bitmap decodeSampledBitmap(String path, int targetWidth, int targetHeight,
+                                              BitmapPool bitmapPool) {
+        // First decode with inJustDecodeBounds=true to check the dimensions
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options, targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        // Thumbnails are photos without transparency, so we don't need an alpha channel.
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        options.inBitmap = bitmapPool.get(options);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap could not be reused for this image. Decode without it.
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size which keeps both image dimensions at or
+     * above our target size.
+     */
+    private static int calculateInSampleSize(BitmapFactory.Options options, int targetWidth,
+                                             int targetHeight) {
+        int inSampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return inSampleSize;
+        }
+        final int halfWidth = options.outWidth / 2;
+        final int halfHeight = options.outHeight / 2;
+        while ((halfWidth / inSampleSize) >= targetWidth
+                && (halfHeight / inSampleSize) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * A single image download, shared by every view waiting on the same URL.
+     */
+    private class Request implements Runnable {
+        final String url;
+        final int targetWidth;
+        final int targetHeight;
+        /** Views waiting on this request. Only accessed on the main thread. */
+        final Map<ImageView, Listener> listeners = new LinkedHashMap<>();
+        volatile boolean cancelled = false;
+
+        Request(String url, int targetWidth, int targetHeight) {
+            this.url = url;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            BitmapDrawable loaded = null;
+            // Set if our loader decoded the image itself. Already retained for delivery.
+            final RecyclingBitmapDrawable[] decoded = new RecyclingBitmapDrawable[1];
+            try {
+                // Cached as soon as it's decoded, by our worker. A request for the same URL
+                // which is already running on another worker (e.g. one cancelled and made
+                // again) waits for this decode rather than starting its own.
+                loaded = mCacheManager.getOrLoad(url,
+                        new ConcurrentLruCache.Loader<String, BitmapDrawable>() {
+                            @Override
+                            public BitmapDrawable load(String key) {
+                                Bitmap bitmap = loadBitmap(key, targetWidth, targetHeight);
+                                if (bitmap == null) {
+                                    return null;
+                                }
+                                // Retained before it's cached, so it can't be evicted into our
+                                // bitmap pool before we deliver it.
+                                decoded[0] = new RecyclingBitmapDrawable(mContext.getResources(),
+                                        bitmap, mCacheManager.getBitmapPool());
+                                decoded[0].retain();
+                                return decoded[0];
+                            }
+                        });
+                if (loaded instanceof RecyclingBitmapDrawable && loaded != decoded[0]
+                        && !((RecyclingBitmapDrawable) loaded).retain()) {
+                    // Cached by someone else, then evicted to our pool before we could retain
+                    // it. Decode a copy of our own, which is never pooled.
+                    Bitmap bitmap = loadBitmap(url, targetWidth, targetHeight);
+                    loaded = bitmap != null
+                            ? new BitmapDrawable(mContext.getResources(), bitmap) : null;
+                }
+            } catch (IOException ioException) {
+                Log.e(LOG_TAG, "There was a problem loading the requested image.", ioException);
+            }
+            final BitmapDrawable bitmapDrawable = loaded;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Request.this, bitmapDrawable);
+                }
+            });
+        }
+    }
+
+    /**
+     * A work queue which hands out the newest task first.
+     */
+    private static class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+        @Override
+        public boolean offer(Runnable runnable) {
+            return super.offerFirst(runnable);
+        }
+    }
+
+    /**
+     * Creates our worker threads with background priority, so they don't compete with the UI.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "ImageLoader #" + mCount.getAndIncrement());
+        }
+    }
+}
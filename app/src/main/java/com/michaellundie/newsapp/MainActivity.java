@@ -1,24 +1,33 @@
 package com.michaellundie.newsapp;
 
 import android.app.Activity;
-import android.app.LoaderManager;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.res.Resources;
 import android.preference.PreferenceManager;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
-import android.util.TypedValue;
+import android.support.v7.widget.RecyclerView;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.michaellundie.newsapp.engine.FeedRequest;
+import com.michaellundie.newsapp.engine.FeedSnapshot;
+import com.michaellundie.newsapp.engine.Metrics;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Displays a list of news results, generated using the guardian news API.
@@ -28,15 +37,19 @@ public class MainActivity extends AppCompatActivity  {
     public static final String LOG_TAG = MainActivity.class.getName();
 
     /**
-     * Create Loader Manager as static, to prevent NPE onDestroy
-     * NOTE: I tried to find a better way to handle this - but so far unsuccessful.
+     * Our loader callbacks. They hold our list, adapter and views, so they belong to this
+     * activity instance: a new one is created (and handed to our loader) in every onCreate.
      */
-    private static LoaderManager.LoaderCallbacks<ArrayList<NewsItem>> newsQueryLoaderCallback;
+    private NewsQueryCallback mNewsQueryCallback;
 
     RecycleViewWithSetEmpty mRecyclerView;
     private RecycleViewWithSetEmpty.Adapter mAdapter;
+    private NewsDisplayFormatter mDisplayFormatter;
     private ArrayList<NewsItem> mList = new ArrayList<>();
     private static final int API_REQUEST_LOADER_ID = 1;
+    /** How close (in rows) to the end of the list we start loading the next page. */
+    private static final int NEXT_PAGE_THRESHOLD = 5;
+    private static final String SAVED_LIST_PATH_KEY = "mListPath";
     private TextView mEmptyStateTextView;
     private ProgressBar mProgressRing;
     static boolean settingsChanged = false;
@@ -51,6 +64,10 @@ public class MainActivity extends AppCompatActivity  {
         // Set up our content view
         setContentView(R.layout.activity_main);
 
+        // Metrics recording is a debug setting, see SettingsActivity.
+        Metrics.setEnabled(BuildConfig.DEBUG && PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(getString(R.string.settings_record_metrics_key), false));
+
         // Set up our custom recycler view
         mRecyclerView = (RecycleViewWithSetEmpty) findViewById(R.id.list);
         mRecyclerView.setHasFixedSize(false);
@@ -66,24 +83,23 @@ public class MainActivity extends AppCompatActivity  {
         //Check for a saved instance to handle rotation and resume
         if(savedInstanceState != null)
         {
-            mList = savedInstanceState.getParcelableArrayList("mList");
-            if (mList != null ) {
-                getLoaderManager().initLoader(API_REQUEST_LOADER_ID, null,
-                        newsQueryLoaderCallback);
+            // Our list itself was saved to a file. The Bundle only holds its path.
+            String savedListPath = savedInstanceState.getString(SAVED_LIST_PATH_KEY);
+            ArrayList<NewsItem> savedList = savedListPath == null
+                    ? null : new FeedSnapshot(new File(savedListPath)).read();
+            if (savedList != null ) {
+                mList = savedList;
             } else {
                 mList = new ArrayList<>();
             }
         }
 
-        // Get our default padding size and convert to pixels for the current device.
-        // This is used for our spannable string in our ViewAdapter
-        Resources resources = getResources();
-        // Receives float, but cast to int.
-        int paddingInPixels = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
-                resources.getDimension(R.dimen.text_padding), resources.getDisplayMetrics());
+        // Our cards' display models depend on our configuration (e.g. screen density), so they
+        // are prepared by a formatter of our own, shared by our adapter and loader callbacks.
+        mDisplayFormatter = new NewsDisplayFormatter(this);
 
         // Initiate our new custom recycler adapter
-        mAdapter = new NewsResultsViewAdapter(mList, this, paddingInPixels);
+        mAdapter = new NewsResultsViewAdapter(mList, this, mDisplayFormatter);
 
         //Check for screen orientation
         int orientation = getResources().getConfiguration().orientation;
@@ -98,16 +114,42 @@ public class MainActivity extends AppCompatActivity  {
             mRecyclerView.setAdapter(mAdapter);
         }
 
+        // Prefetch the next page of results as the user nears the end of our list.
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || mNewsQueryCallback == null) {
+                    return;
+                }
+                LinearLayoutManager layoutManager =
+                        (LinearLayoutManager) recyclerView.getLayoutManager();
+                int lastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+                if (lastVisiblePosition >= mAdapter.getItemCount() - NEXT_PAGE_THRESHOLD) {
+                    mNewsQueryCallback.loadNextPage(getLoaderManager(), API_REQUEST_LOADER_ID);
+                }
+            }
+        });
+
+        // After a configuration change our loader is still running, or holds its results.
+        // Reattach it with new callbacks for this activity's list and views, so the previous
+        // activity isn't kept alive by it and it can keep loading pages into our list.
+        if (savedInstanceState != null
+                && getLoaderManager().getLoader(API_REQUEST_LOADER_ID) != null) {
+            mNewsQueryCallback = createNewsQueryCallback();
+            getLoaderManager().initLoader(API_REQUEST_LOADER_ID, null, mNewsQueryCallback);
+        }
+
         // Setting up our FAB refresh button
         FloatingActionButton searchDialogButton = findViewById(R.id.fab_refresh);
         searchDialogButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                boolean isConnected = QueryUtils.checkNetworkAccess(view.getContext());
                 if (firstLoad) {
                     firstLoad = false;
                     executeSearch();
                 } else {
+                    // The user asked for a refresh, so don't answer from memory.
+                    QueryUtils.invalidateFeedCache();
                     resetSearch();
                     executeSearch();
                 }
@@ -157,13 +199,26 @@ public class MainActivity extends AppCompatActivity  {
      */
     @Override
     protected void onSaveInstanceState(Bundle outState) {
-        //Saving parcelable code adapted from : https://stackoverflow.com/a/12503875/9738433
-        if (!mList.isEmpty()){
-            outState.putParcelableArrayList("mList", mList);
+        // Large lists can be too big for a Bundle. Our loader has already saved our list to a
+        // file (its snapshot, in our compact binary format) in the background, so we only keep
+        // the path of that file in our saved state. Nothing is written on the main thread.
+        if (!mList.isEmpty() && mNewsQueryCallback != null) {
+            outState.putString(SAVED_LIST_PATH_KEY,
+                    mNewsQueryCallback.getSnapshotFile().getPath());
         }
         super.onSaveInstanceState(outState);
     }
 
+    /**
+     * Adds our performance metrics to the activity dump, e.g.
+     * adb shell dumpsys activity com.michaellundie.newsapp/.MainActivity
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        Metrics.dump(writer, prefix);
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.settings_menu, menu);
@@ -188,22 +243,9 @@ public class MainActivity extends AppCompatActivity  {
      */
     public void executeSearch() {
 
-        //Get user preferences
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String returnQuantity = sharedPrefs.getString(
-                getString(R.string.settings_return_quantity_key),
-                getString(R.string.settings_return_quantity_default));
-        String returnOrder = sharedPrefs.getString(
-                getString(R.string.settings_orderby_key),
-                getString(R.string.settings_orderby_newest));
-
-        // Build our Query URL
-        String queryURL = QueryUtils.queryRequestBuilder(this, returnQuantity, returnOrder);
-
         // Create loader from class, as opposed to implementing the LoaderManager withing MainActivity
         // Used assistance and code from: https://stackoverflow.com/a/20839825
-        newsQueryLoaderCallback = new NewsQueryCallback(this, queryURL, mList, mAdapter,
-                mProgressRing, mEmptyStateTextView);
+        mNewsQueryCallback = createNewsQueryCallback();
 
         boolean isConnected = QueryUtils.checkNetworkAccess(this);
         if (!isConnected) {
@@ -218,22 +260,56 @@ public class MainActivity extends AppCompatActivity  {
             mEmptyStateTextView.setVisibility(View.GONE);
             mEmptyStateTextView.setText(getResources().getString(R.string.query_noresults));
             // Let's get our loader manager hooked up and started
-            getLoaderManager().initLoader(API_REQUEST_LOADER_ID, null, newsQueryLoaderCallback);
+            getLoaderManager().initLoader(API_REQUEST_LOADER_ID, null, mNewsQueryCallback);
         }
     }
 
     /**
-     * A method which resets our loader and clears cache to prepare the adapter for a new query.
+     * Builds our loader callbacks from the user's preferences, for our current list and views.
+     */
+    private NewsQueryCallback createNewsQueryCallback() {
+        //Get user preferences
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String returnQuantity = sharedPrefs.getString(
+                getString(R.string.settings_return_quantity_key),
+                getString(R.string.settings_return_quantity_default));
+        String returnOrder = sharedPrefs.getString(
+                getString(R.string.settings_orderby_key),
+                getString(R.string.settings_orderby_newest));
+        Set<String> topics = sharedPrefs.getStringSet(getString(R.string.settings_topics_key),
+                null);
+        if (topics == null || topics.isEmpty()) {
+            topics = new HashSet<>(Arrays.asList(
+                    getResources().getStringArray(R.array.settings_topics_default_values)));
+        }
+
+        // Newest first results can be synced incrementally, using our local article store.
+        boolean incrementalSync = returnOrder.equals(getString(R.string.settings_orderby_newest));
+        int resultLimit;
+        try {
+            resultLimit = Integer.parseInt(returnQuantity);
+        } catch (NumberFormatException e) {
+            resultLimit = Integer.parseInt(getString(R.string.settings_return_quantity_default));
+        }
+
+        // Build our Query requests, one per topic. They are fetched in parallel.
+        ArrayList<FeedRequest> queryRequests =
+                QueryUtils.queryRequestBuilder(this, resultLimit, returnOrder, topics);
+
+        return new NewsQueryCallback(this, queryRequests, incrementalSync, resultLimit, mList,
+                mAdapter, mDisplayFormatter, mProgressRing, mEmptyStateTextView);
+    }
+
+    /**
+     * A method which resets our loader to prepare the adapter for a new query.
+     * The current results stay on screen until the new ones arrive, and are then diffed
+     * against them, so only changed rows are updated. The image cache is keyed by thumbnail
+     * URL, so it is kept for any articles we receive again.
      */
     private void resetSearch() {
         // upon a new search initiation, destroy previous loader.
         getLoaderManager().destroyLoader(API_REQUEST_LOADER_ID);
-        //clear the array list
-        mList.clear();
-        //clear our cache
-        CacheManager.getInstance().clear();
-        //notify the adapter and scroll to position 0
-        mAdapter.notifyDataSetChanged();
+        //scroll to position 0
         mRecyclerView.scrollToPosition(0);
         // Show our progress ring.
         mProgressRing.setVisibility(View.VISIBLE);
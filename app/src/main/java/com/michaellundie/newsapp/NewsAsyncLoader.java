@@ -2,29 +2,73 @@ package com.michaellundie.newsapp;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
-import android.text.TextUtils;
 import android.util.Log;
 
+import com.michaellundie.newsapp.engine.CancellationToken;
+import com.michaellundie.newsapp.engine.FeedCanceledException;
+import com.michaellundie.newsapp.engine.FeedRequest;
+import com.michaellundie.newsapp.engine.FeedSnapshot;
+import com.michaellundie.newsapp.engine.Metrics;
+import com.michaellundie.newsapp.engine.MultiFeedFetcher;
+import com.michaellundie.newsapp.engine.NewsItem;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * Async Loader extended class. Allows asynchronous loading of our API data download query.
+ * Results are loaded a page at a time: the first page on start, and each following page when
+ * {@link #loadNextPage()} is called. Every delivered result holds all pages loaded so far.
+ * Our results (all pages) are saved to a snapshot as they're loaded. On a cold start that
+ * snapshot is delivered first. The first page is then revalidated over the network and merged
+ * into it, and paging carries on after the snapshot's last page.
+ * Each configured topic has its own request. They are fetched in parallel, and their results
+ * merged into one feed.
+ * A load which is cancelled (e.g. the loader is destroyed by a new search) stops its requests
+ * and parsing straight away, releasing their connections.
  */
 public class NewsAsyncLoader extends AsyncTaskLoader<ArrayList<NewsItem>> {
 
     private static final String LOG_TAG = NewsAsyncLoader.class.getSimpleName();
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("feed.load", "us");
     private ArrayList<NewsItem> apiQueryResults = null;
-    private String urlString;
+    private List<FeedRequest> requests;
+    /** Requests of the topics which haven't reached their last page yet. */
+    private final ArrayList<FeedRequest> pagedRequests = new ArrayList<>();
+    private boolean incrementalSync;
+    private int resultLimit;
+    /** The page we are loading (or have last loaded). Pages start at 1. */
+    private volatile int currentPage = 1;
+    private volatile boolean hasMorePages = true;
+    private boolean isLoading = false;
+    /** Set once our snapshot has been read, until we have delivered it. */
+    private volatile boolean revalidationPending = false;
+    /** Set once our snapshot has been delivered, until we have revalidated it (or failed to). */
+    private volatile boolean revalidating = false;
+    private boolean snapshotChecked = false;
+    /** Cancels the fetch of the load in progress. Replaced for every load. */
+    private volatile CancellationToken cancellation = new CancellationToken();
+    /** Set while onForceLoad() starts a load. Only accessed on the main thread. */
+    private boolean startingLoad = false;
 
     /**
      * Async Loader constructor
      * @param context context of current activity
-     * @param url the api request URL constructed using user search queries
+     * @param requests the api requests constructed using user search queries, one per topic
+     * @param incrementalSync true if results are ordered by date, in which case we only request
+     *                        articles newer than those in our {@link ArticleStore}.
+     * @param resultLimit the number of articles per topic to return from our store, and our
+     *                    page size
      */
-    NewsAsyncLoader(Context context, String url) {
+    NewsAsyncLoader(Context context, List<FeedRequest> requests, boolean incrementalSync,
+                    int resultLimit) {
         super(context);
-        this.urlString = url;
+        this.requests = requests;
+        this.pagedRequests.addAll(requests);
+        this.incrementalSync = incrementalSync;
+        this.resultLimit = resultLimit;
     }
 
     @Override
@@ -39,30 +83,275 @@ public class NewsAsyncLoader extends AsyncTaskLoader<ArrayList<NewsItem>> {
         }
     }
 
+    @Override
+    protected void onForceLoad() {
+        // Stop the fetch of any load in progress, then hand the new load its own token before
+        // it can be dispatched: super.onForceLoad() may start it straight away.
+        cancellation.cancel();
+        cancellation = new CancellationToken();
+        isLoading = true;
+        startingLoad = true;
+        try {
+            super.onForceLoad();
+        } finally {
+            startingLoad = false;
+        }
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        // While starting a load, super.onForceLoad() cancels the previous one through here.
+        // We already have, and our token now belongs to the new load.
+        if (!startingLoad) {
+            cancellation.cancel();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        // We are being destroyed, so nobody wants the results of a load in progress.
+        // cancelLoad() calls cancelLoadInBackground() from API 16 on. Below that, cancel our
+        // fetch ourselves.
+        cancelLoad();
+        cancellation.cancel();
+    }
+
+    /**
+     * Starts loading the next page of results, unless we are already loading or we have
+     * reached the last page. Must be called from the main thread.
+     * @return true if a new page is being loaded.
+     */
+    public boolean loadNextPage() {
+        if (isLoading || revalidating || !hasMorePages || apiQueryResults == null) {
+            return false;
+        }
+        currentPage++;
+        forceLoad();
+        return true;
+    }
+
     @Override
     public ArrayList<NewsItem> loadInBackground() {
-        Log.i(LOG_TAG, "TEST: BookSearchAsyncLoader: loadInBackground executed");
-        //Let's check to make sure our URL isn't empty for some reason.
-        //We should never have spaces before or after our URL here. Not using trim()
-        if (!TextUtils.isEmpty(urlString)) {
+        long loadStart = Metrics.startTimer();
+        CancellationToken cancellation = this.cancellation;
+        //Let's check to make sure our requests aren't missing for some reason.
+        if (requests != null && !requests.isEmpty()) {
             try {
-                // Everything is a-okay. Continue to fetch results.
-                ArrayList<NewsItem> resultItems = QueryUtils.fetchQueryResults(urlString);
-                if (resultItems != null) {
-                    // Fetch results are not null. Assign to our return variable.
-                    apiQueryResults = resultItems;
-                } else {
-                    throw new IOException("No response received.");
+                if (apiQueryResults == null && !snapshotChecked) {
+                    // Show our last results straight away, rather than waiting on the network.
+                    snapshotChecked = true;
+                    FeedSnapshot.Contents snapshot =
+                            QueryUtils.getFeedSnapshot(getContext(), requests).readContents();
+                    if (snapshot != null && !snapshot.items.isEmpty()) {
+                        apiQueryResults = snapshot.items;
+                        // Our next page is the one after those the user had loaded.
+                        currentPage = snapshot.pageCount;
+                        revalidationPending = true;
+                    }
+                }
+                ArrayList<NewsItem> previousResults = apiQueryResults;
+                if (revalidating) {
+                    // Our snapshot is on screen. Merge a fresh first page into it, rather than
+                    // replacing it, so the pages the user had scrolled through stay.
+                    ArrayList<NewsItem> firstPage = loadFirstPage(cancellation);
+                    revalidating = false;
+                    if (firstPage != null) {
+                        apiQueryResults = mergeFirstPage(firstPage, apiQueryResults);
+                    }
+                } else if (!revalidationPending) {
+                    // (A snapshot waiting to be delivered is revalidated once it has been, see
+                    // deliverResult().)
+                    if (currentPage == 1 || apiQueryResults == null) {
+                        apiQueryResults = loadFirstPage(cancellation);
+                    } else {
+                        apiQueryResults = loadPage(currentPage, apiQueryResults, cancellation);
+                    }
+                }
+                if (apiQueryResults != null && apiQueryResults != previousResults) {
+                    // Every page we've loaded goes into our snapshot, here in the
+                    // background. Our activity saves its state by pointing at it.
+                    QueryUtils.saveFeedSnapshot(getContext(), requests, apiQueryResults,
+                            currentPage);
+                }
+            } catch (FeedCanceledException e) {
+                if (revalidating) {
+                    // Tried again once our snapshot is next delivered, e.g. when we restart.
+                    revalidating = false;
+                    revalidationPending = true;
                 }
+                Log.i(LOG_TAG, "Load cancelled.");
             } catch(Exception e) {
+                // Our snapshot stays as it is. Paging carries on from it.
+                revalidating = false;
                 Log.e("Log error", "Problem with Requested URL", e);
             }
         }
+        LOAD_TIME.recordMicrosSince(loadStart);
         return apiQueryResults;
     }
 
+    /**
+     * Loads our first page of results: the first page of every topic, fetched in parallel and
+     * merged into one feed.
+     */
+    private ArrayList<NewsItem> loadFirstPage(CancellationToken cancellation)
+            throws IOException {
+        ArticleStore store = ArticleStore.getInstance(getContext());
+        ArrayList<FeedRequest> firstPages = new ArrayList<>(requests.size());
+        ArrayList<String> topics = new ArrayList<>(requests.size());
+        for (FeedRequest request : requests) {
+            topics.add(request.getQuery());
+            String newestStored = incrementalSync
+                    ? store.getNewestPublicationDate(request.getQuery()) : null;
+            // Only ask for articles published since the newest one we already have.
+            firstPages.add(newestStored != null ? request.withFromDate(newestStored) : request);
+        }
+        // Everything is a-okay. Continue to fetch results.
+        List<ArrayList<NewsItem>> topicResults = null;
+        try {
+            topicResults = QueryUtils.getFeedFetcher(getContext())
+                    .fetchAll(firstPages, cancellation);
+        } catch (IOException e) {
+            if (!incrementalSync || e instanceof FeedCanceledException) {
+                throw e;
+            }
+            Log.e(LOG_TAG, "Problem fetching new articles. Showing stored articles.", e);
+        }
+        if (topicResults != null) {
+            // Merge what we received into our local store.
+            mergeIntoStore(store, requests, topicResults);
+        }
+        if (incrementalSync) {
+            // Read back from our store, which holds the articles from earlier syncs too, already
+            // merged by date. (If every request failed, at least we can show what we have.)
+            return store.getNewestArticles(topics, resultLimit * requests.size());
+        } else {
+            // Results not ordered by date (or we would sync incrementally). Interleave them.
+            return MultiFeedFetcher.merge(topicResults, false);
+        }
+    }
+
+    /**
+     * Fetches a following page of results from the API and appends it to those we already have.
+     * Articles we already hold (a new article may have pushed them onto the next page) are
+     * skipped.
+     * @param page the page number to fetch
+     * @param loadedResults the results of all previous pages. Not modified.
+     * @param cancellation stops our requests
+     * @return a new list holding all loaded pages. If a request failed, the page can be
+     * requested again.
+     * @throws FeedCanceledException if we were cancelled. The page can be requested again.
+     */
+    private ArrayList<NewsItem> loadPage(int page, ArrayList<NewsItem> loadedResults,
+                                         CancellationToken cancellation)
+            throws FeedCanceledException {
+        ArrayList<FeedRequest> pageRequests = new ArrayList<>(pagedRequests.size());
+        for (FeedRequest request : pagedRequests) {
+            pageRequests.add(request.withPage(page));
+        }
+        List<ArrayList<NewsItem>> topicResults = null;
+        try {
+            topicResults = QueryUtils.getFeedFetcher(getContext())
+                    .fetchAll(pageRequests, cancellation);
+        } catch (FeedCanceledException e) {
+            currentPage = page - 1;
+            throw e;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem fetching page " + page, e);
+        }
+        if (topicResults == null) {
+            // Every request failed, e.g. we're offline for a moment. Roll back, so the next
+            // call to loadNextPage() asks for this page again.
+            currentPage = page - 1;
+            return loadedResults;
+        }
+        ArrayList<FeedRequest> requested = new ArrayList<>(pagedRequests);
+        boolean anyFailed = false;
+        for (int i = requested.size() - 1; i >= 0; i--) {
+            ArrayList<NewsItem> pageItems = topicResults.get(i);
+            if (pageItems == null) {
+                // A failed request tells us nothing about this topic's last page.
+                anyFailed = true;
+            } else if (pageItems.size() < resultLimit) {
+                // A short response means this topic has gone past its last page.
+                pagedRequests.remove(i);
+            }
+        }
+        if (anyFailed) {
+            // Keep what the other topics sent, but ask for this page again. Articles we
+            // receive twice are skipped below.
+            currentPage = page - 1;
+        }
+        hasMorePages = !pagedRequests.isEmpty();
+        mergeIntoStore(ArticleStore.getInstance(getContext()), requested, topicResults);
+        ArrayList<NewsItem> pageItems = MultiFeedFetcher.merge(topicResults, incrementalSync);
+        if (pageItems.isEmpty()) {
+            return loadedResults;
+        }
+
+        ArrayList<NewsItem> results = new ArrayList<>(loadedResults.size() + pageItems.size());
+        HashSet<String> heldIds = new HashSet<>();
+        addUnlessHeld(results, heldIds, loadedResults);
+        addUnlessHeld(results, heldIds, pageItems);
+        return results;
+    }
+
+    /**
+     * Merges a freshly loaded first page into the results of our snapshot. The new first page
+     * comes first, followed by the snapshot's articles which it doesn't hold.
+     * @return a new list. Neither list is modified.
+     */
+    private static ArrayList<NewsItem> mergeFirstPage(ArrayList<NewsItem> firstPage,
+                                                      ArrayList<NewsItem> snapshot) {
+        ArrayList<NewsItem> results = new ArrayList<>(firstPage.size() + snapshot.size());
+        HashSet<String> heldIds = new HashSet<>();
+        addUnlessHeld(results, heldIds, firstPage);
+        addUnlessHeld(results, heldIds, snapshot);
+        return results;
+    }
+
+    /**
+     * Adds the items to our results, skipping articles we already hold.
+     */
+    private static void addUnlessHeld(ArrayList<NewsItem> results, HashSet<String> heldIds,
+                                      List<NewsItem> items) {
+        for (NewsItem item : items) {
+            // We can't tell articles without an id apart, so always keep them.
+            String id = item.getId();
+            if (id == null || id.isEmpty() || heldIds.add(id)) {
+                results.add(item);
+            }
+        }
+    }
+
+    /**
+     * Stores the results of each topic's request under its topic.
+     */
+    private static void mergeIntoStore(ArticleStore store, List<FeedRequest> requests,
+                                       List<ArrayList<NewsItem>> topicResults) {
+        for (int i = 0; i < requests.size(); i++) {
+            if (topicResults.get(i) != null) {
+                store.mergeArticles(requests.get(i).getQuery(), topicResults.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void onCanceled(ArrayList<NewsItem> data) {
+        super.onCanceled(data);
+        isLoading = false;
+    }
+
     @Override
     public void deliverResult(ArrayList<NewsItem> data) {
+        isLoading = false;
         super.deliverResult(data);
+        if (revalidationPending && isStarted()) {
+            // Our snapshot is on screen. Now check the network for anything newer.
+            revalidationPending = false;
+            revalidating = true;
+            forceLoad();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.v4.content.ContextCompat;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.TextUtils;
+import android.util.TypedValue;
+
+import com.michaellundie.newsapp.engine.FeedDates;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.WeakHashMap;
+
+/**
+ * Prepares the {@link NewsDisplayModel} of our {@link NewsItem}s: the formatted date, author
+ * line and styled title shown on each card. This runs once per article (on a background
+ * thread, as results arrive), so {@link NewsResultsViewAdapter#onBindViewHolder} only has to
+ * look up and assign ready made values.
+ * Our models depend on the configuration we were created with, so each activity has its own
+ * formatter, and never binds models prepared for another configuration.
+ * Thread safe: models are prepared on a background thread while our adapter binds them.
+ */
+public class NewsDisplayFormatter {
+
+    private final DateFormat mDisplayDateFormat =
+            new SimpleDateFormat("dd MMM, yyyy HH:mm", Locale.getDefault());
+    private final String mNoAuthors;
+    private final int mTitleBackgroundColor;
+    private final int mPadding;
+    /** The models we've prepared, by article. Weak, so they go along with their articles. */
+    private final Map<NewsItem, NewsDisplayModel> mDisplayModels = new WeakHashMap<>();
+
+    NewsDisplayFormatter(Context context) {
+        Resources resources = context.getResources();
+        mNoAuthors = resources.getString(R.string.no_authors);
+        mTitleBackgroundColor = ContextCompat.getColor(context, R.color.colorAccent);
+        mPadding = getTitlePadding(resources);
+        // API dates are in UTC, and we have always shown them as they are.
+        mDisplayDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Get our default padding size and convert to pixels for the current device.
+     * This is used for our spannable title string.
+     */
+    static int getTitlePadding(Resources resources) {
+        // Receives float, but cast to int.
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                resources.getDimension(R.dimen.text_padding), resources.getDisplayMetrics());
+    }
+
+    /**
+     * Prepares the display model of every item which doesn't have one yet.
+     * @param items articles to format
+     */
+    public void format(List<NewsItem> items) {
+        for (NewsItem item : items) {
+            // One lock per item, so binding never waits on a whole page.
+            getDisplayModel(item);
+        }
+    }
+
+    /**
+     * @return the display model of the article. Prepared now if it hasn't been already, e.g.
+     * for items restored from a saved instance state.
+     */
+    public synchronized NewsDisplayModel getDisplayModel(NewsItem item) {
+        NewsDisplayModel model = mDisplayModels.get(item);
+        if (model == null) {
+            model = createDisplayModel(item);
+            mDisplayModels.put(item, model);
+        }
+        return model;
+    }
+
+    /**
+     * Formats a new display model for the article. Not cached.
+     */
+    synchronized NewsDisplayModel createDisplayModel(NewsItem item) {
+        return new NewsDisplayModel(formatTitle(item.getTitle()),
+                formatAuthors(item.getAuthors()), formatDate(item.getPublishedMillis()));
+    }
+
+    private CharSequence formatTitle(String title) {
+        SpannableString titleSpan = new SpannableString(title == null ? "" : title);
+        titleSpan.setSpan(new PaddingBackgroundColorSpan(mTitleBackgroundColor, mPadding),
+                0, titleSpan.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return titleSpan;
+    }
+
+    private String formatAuthors(String[] authors) {
+        // Let's handle the authors data. First check if author data was returned.
+        if (authors.length == 0) {
+            // No data: set string appropriately.
+            return mNoAuthors;
+        }
+        // Data returned. Join our authors (in case of multiple).
+        return TextUtils.join(", ", authors);
+    }
+
+    private String formatDate(long publishedMillis) {
+        if (publishedMillis == FeedDates.UNKNOWN) {
+            return null;
+        }
+        // Our date was parsed once, by the feed parser.
+        return mDisplayDateFormat.format(new Date(publishedMillis));
+    }
+}
@@ -0,0 +1,31 @@
+package com.michaellundie.newsapp;
+
+import com.michaellundie.newsapp.engine.NewsItem;
+
+/**
+ * The ready to display values of one of our {@link NewsItem}s: the formatted date, author line
+ * and styled title shown on its card. Prepared by a {@link NewsDisplayFormatter}, and kept out
+ * of NewsItem itself, as they depend on our configuration (screen density, locale), which our
+ * feed engine knows nothing about.
+ */
+public class NewsDisplayModel {
+
+    private final CharSequence mTitle;
+    private final String mAuthors;
+    private final String mDate;
+
+    NewsDisplayModel(CharSequence title, String authors, String date) {
+        mTitle = title;
+        mAuthors = authors;
+        mDate = date;
+    }
+
+    public CharSequence getTitle() { return mTitle; }
+
+    public String getAuthors() { return mAuthors; }
+
+    /**
+     * @return the formatted publication date, or null if it is unknown
+     */
+    public String getDate() { return mDate; }
+}
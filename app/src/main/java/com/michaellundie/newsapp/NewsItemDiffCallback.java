@@ -0,0 +1,49 @@
+package com.michaellundie.newsapp;
+
+import android.support.v7.util.DiffUtil;
+import android.text.TextUtils;
+
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.util.List;
+
+/**
+ * Compares two lists of {@link NewsItem}s by article identity, so only rows which were
+ * actually inserted, removed, moved or changed are updated in our adapter.
+ */
+public class NewsItemDiffCallback extends DiffUtil.Callback {
+
+    private final List<NewsItem> mOldItems;
+    private final List<NewsItem> mNewItems;
+
+    NewsItemDiffCallback(List<NewsItem> oldItems, List<NewsItem> newItems) {
+        mOldItems = oldItems;
+        mNewItems = newItems;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        NewsItem oldItem = mOldItems.get(oldItemPosition);
+        NewsItem newItem = mNewItems.get(newItemPosition);
+        if (TextUtils.isEmpty(oldItem.getId()) || TextUtils.isEmpty(newItem.getId())) {
+            // Fall back to the article URL if the API gave us no id.
+            return TextUtils.equals(oldItem.getArticleURL(), newItem.getArticleURL());
+        }
+        return oldItem.getId().equals(newItem.getId());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldItems.get(oldItemPosition).hasSameContent(mNewItems.get(newItemPosition));
+    }
+}
@@ -4,11 +4,21 @@ import android.app.LoaderManager;
 import android.content.Context;
 import android.content.Loader;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.michaellundie.newsapp.engine.FeedRequest;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Loader callback manager. Manages ongoing process in AsyncLoader and allows us to receive results
@@ -19,28 +29,44 @@ public class NewsQueryCallback implements LoaderManager.LoaderCallbacks<ArrayLis
     private static final String LOG_TAG = NewsQueryCallback.class.getSimpleName();
     private Context context;
     private ArrayList<NewsItem> list;
-    private String connectURL;
+    private List<FeedRequest> requests;
+    private boolean incrementalSync;
+    private int resultLimit;
     private ProgressBar progressRing;
     private TextView emptyStateTextView;
     private RecycleViewWithSetEmpty.Adapter adapter;
+    private NewsDisplayFormatter displayFormatter;
     private NewsAsyncLoader mLoader;
+    /** Diffs (and formatting new items) are small, short jobs. One thread keeps them in order. */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /** Incremented for every new result, so we only apply the diff of the latest one. */
+    private int diffGeneration = 0;
 
     /**
      * Object constructor for this class.
      * @param context The current context.
-     * @param connectURL the URL used to query the API
+     * @param requests the requests used to query the API, one per topic
+     * @param incrementalSync true if only articles newer than our stored ones should be fetched
+     * @param resultLimit the number of articles we want to display
      * @param list The ArrayList we will populate.
      * @param adapter The RecyclerViewer Adapter to be used in conjunction with the loader.
+     * @param displayFormatter prepares the display models our adapter binds, off the main thread
      * @param bar id of our ProgressBar view
      * @param emptyStateView id of empty state text view in the custom RecycleView
      */
-    NewsQueryCallback(Context context, String connectURL, ArrayList<NewsItem> list,
-                      RecycleViewWithSetEmpty.Adapter adapter, ProgressBar bar,
+    NewsQueryCallback(Context context, List<FeedRequest> requests, boolean incrementalSync,
+                      int resultLimit, ArrayList<NewsItem> list,
+                      RecycleViewWithSetEmpty.Adapter adapter,
+                      NewsDisplayFormatter displayFormatter, ProgressBar bar,
                       TextView emptyStateView) {
         this.context = context;
-        this.connectURL = connectURL;
+        this.requests = requests;
+        this.incrementalSync = incrementalSync;
+        this.resultLimit = resultLimit;
         this.list = list;
         this.adapter = adapter;
+        this.displayFormatter = displayFormatter;
         this.progressRing = bar;
         this.emptyStateTextView = emptyStateView;
     }
@@ -49,7 +75,7 @@ public class NewsQueryCallback implements LoaderManager.LoaderCallbacks<ArrayLis
     public Loader<ArrayList<NewsItem>> onCreateLoader(int id, Bundle args) {
         if (mLoader == null) {
             // It's the first time to request a the loader, lets create a new instance.
-            return new NewsAsyncLoader(context, connectURL);
+            return new NewsAsyncLoader(context, requests, incrementalSync, resultLimit);
         } else {
             // Let's prevent any NPE on configuration change. Return the current instance.
             // (We are using the same instance ID, so we don't want to cause problems here).
@@ -59,23 +85,126 @@ public class NewsQueryCallback implements LoaderManager.LoaderCallbacks<ArrayLis
 
     @Override
     public void onLoaderReset(Loader loader) {
-        // Reset was called. Clear our local ArrayList and notify our recyclerview adapter of the
-        // change.
+        // Reset was called. Any diff still being calculated is now out of date.
+        // We keep showing our current results; the next load is diffed against them.
         mLoader = null;
-        list.clear();
-        adapter.notifyDataSetChanged();
+        diffGeneration++;
+    }
+
+    /**
+     * @return the file our loader saves its results to, see {@link QueryUtils#saveFeedSnapshot}
+     */
+    public File getSnapshotFile() {
+        return QueryUtils.getFeedSnapshot(context, requests).getFile();
+    }
+
+    /**
+     * Asks our loader for the next page of results, e.g. when the user nears the end of the list.
+     * @param loaderManager the loader manager our loader was started with
+     * @param loaderId the id our loader was started with
+     */
+    public void loadNextPage(LoaderManager loaderManager, int loaderId) {
+        Loader<ArrayList<NewsItem>> loader = loaderManager.getLoader(loaderId);
+        if (loader instanceof NewsAsyncLoader) {
+            ((NewsAsyncLoader) loader).loadNextPage();
+        }
     }
 
     @Override
     public void onLoadFinished(Loader<ArrayList<NewsItem>> loader, ArrayList<NewsItem> data) {
-        //Loading is complete. Clear our local array list and notify the adapter of changes.
+        if (data != null && isAppendedPage(data)) {
+            // A following page was loaded. Format its rows on a background thread, then only
+            // notify the adapter of the new rows, so the list (and the user's scroll position)
+            // is left as it is.
+            final ArrayList<NewsItem> newRows = new ArrayList<>(data.subList(list.size(),
+                    data.size()));
+            final int generation = ++diffGeneration;
+            DIFF_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    displayFormatter.format(newRows);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            appendPage(generation, newRows);
+                        }
+                    });
+                }
+            });
+            return;
+        }
+        //Loading is complete. Work out what changed on a background thread, then only update
+        //the rows which were inserted, removed, moved or changed.
+        final ArrayList<NewsItem> oldItems = new ArrayList<>(list);
+        final ArrayList<NewsItem> newItems =
+                data != null ? new ArrayList<>(data) : new ArrayList<NewsItem>();
+        final int generation = ++diffGeneration;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Prepare dates, author lines and titles here, rather than on every bind.
+                displayFormatter.format(newItems);
+                final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                        new NewsItemDiffCallback(oldItems, newItems), true);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyDiff(generation, oldItems, newItems, diffResult);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Adds a following page of results to the end of our list. Runs on the main thread.
+     */
+    private void appendPage(int generation, ArrayList<NewsItem> newRows) {
+        if (generation != diffGeneration) {
+            // A newer result (or a reset) arrived while we were formatting. Drop this one.
+            return;
+        }
+        int previousSize = list.size();
+        list.addAll(newRows);
+        adapter.notifyItemRangeInserted(previousSize, newRows.size());
+    }
+
+    /**
+     * Swaps our new results into the list and dispatches the granular adapter notifications.
+     * Runs on the main thread.
+     */
+    private void applyDiff(int generation, ArrayList<NewsItem> oldItems,
+                           ArrayList<NewsItem> newItems, DiffUtil.DiffResult diffResult) {
+        if (generation != diffGeneration) {
+            // A newer result (or a reset) arrived while we were calculating. Drop this one.
+            return;
+        }
+        boolean listUnchanged = list.equals(oldItems);
         list.clear();
-        adapter.notifyDataSetChanged();
-        //Load all of our fetched and parsed data into our local ArrayList. Notify adapter.
-        list.addAll(data);
-        adapter.notifyDataSetChanged();
+        list.addAll(newItems);
+        if (listUnchanged) {
+            diffResult.dispatchUpdatesTo(adapter);
+        } else {
+            // Our list was changed behind our back, so the diff no longer applies.
+            adapter.notifyDataSetChanged();
+        }
         //Hide our UI progress spinner
         progressRing.setVisibility(View.GONE);
         emptyStateTextView.setText(R.string.query_noresults);
     }
+
+    /**
+     * @return true if our new results are the results we are showing, followed by a new page.
+     */
+    private boolean isAppendedPage(ArrayList<NewsItem> data) {
+        if (list.isEmpty() || data.size() <= list.size()) {
+            return false;
+        }
+        for (int position = 0; position < list.size(); position++) {
+            if (list.get(position) != data.get(position)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
\ No newline at end of file
@@ -2,16 +2,13 @@ package com.michaellundie.newsapp;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
 import android.support.annotation.NonNull;
-import android.support.v4.content.ContextCompat;
+import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.text.Spannable;
-import android.text.SpannableString;
-import android.text.style.BackgroundColorSpan;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -20,110 +17,103 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.Instant;
+import com.michaellundie.newsapp.engine.Metrics;
+import com.michaellundie.newsapp.engine.NewsItem;
+
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * An extended RecyclerView adapter managing parsed query results and displaying them on the UI.
  */
-public class NewsResultsViewAdapter extends RecyclerView.Adapter<NewsResultsViewAdapter.ViewHolder> {
+public class NewsResultsViewAdapter extends RecyclerView.Adapter<NewsResultsViewAdapter.ViewHolder>
+        implements ThumbnailPrefetcher.Source {
 
     public static final String LOG_TAG = NewsResultsViewAdapter.class.getSimpleName();
+    private static final Metrics.Histogram BIND_TIME = Metrics.histogram("list.bind", "us");
+    /** Every row is a news card, so every ViewHolder can be reused for any row. */
+    static final int VIEW_TYPE_ARTICLE = 0;
+    /**
+     * Recycled cards kept per span. A fling can replace a few screens of rows between frames,
+     * and every card our pool can't hand back is inflated from XML again.
+     */
+    private static final int RECYCLED_CARDS_PER_SPAN = 8;
+    /** The most rows ahead of those on screen we prefetch thumbnails for. */
+    private static final int PREFETCH_MAX_ROWS_AHEAD = 6;
+    /** The most prefetches downloading at once, leaving a worker for visible thumbnails. */
+    private static final int PREFETCH_MAX_IN_FLIGHT = 2;
+    /** Prefetched thumbnails may take up 1/PREFETCH_CACHE_FRACTION of our image cache. */
+    private static final int PREFETCH_CACHE_FRACTION = 4;
     private Context mContext;
     private final ArrayList<NewsItem> mValues;
     private final int mPadding;
     private BitmapDrawable nothumbnail;
+    private final ImageLoader mImageLoader;
+    private final NewsDisplayFormatter mFormatter;
+    /**
+     * Thumbnail size (in pixels). A fallback until our thumbnail views have been measured, then
+     * the size they were last measured at, which is what we prefetch at.
+     */
+    private int mThumbnailWidth;
+    private int mThumbnailHeight;
+    private final ThumbnailPrefetcher mPrefetcher;
+    /** Holds back thumbnail requests while our list flings, see {@link ImageLoader#pause()}. */
+    private final RecyclerView.OnScrollListener mFlingListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+                mImageLoader.pause();
+            } else {
+                // The fling is over (or was caught by the user). Load what is on screen now.
+                mImageLoader.resume(getVisibleThumbnails(recyclerView));
+            }
+        }
+    };
 
-
-
-    public NewsResultsViewAdapter(ArrayList<NewsItem> items, Context context, int padding) {
+    /**
+     * @param formatter prepares the display models of our items, see {@link NewsDisplayFormatter}
+     */
+    public NewsResultsViewAdapter(ArrayList<NewsItem> items, Context context,
+                                  NewsDisplayFormatter formatter) {
         mValues = items;
         mContext = context;
-        mPadding = padding;
+        // Our title span is padded by the same amount, see NewsDisplayFormatter.
+        mPadding = NewsDisplayFormatter.getTitlePadding(context.getResources());
         nothumbnail = new BitmapDrawable(BitmapFactory.decodeResource
                 (mContext.getResources(), R.drawable.no_thumbnail));
+        mImageLoader = ImageLoader.getInstance(context);
+        mFormatter = formatter;
+        mThumbnailWidth = mContext.getResources().getDisplayMetrics().widthPixels;
+        mThumbnailHeight = mContext.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+        mPrefetcher = new ThumbnailPrefetcher(this, mImageLoader, PREFETCH_MAX_ROWS_AHEAD,
+                PREFETCH_MAX_IN_FLIGHT,
+                CacheManager.getInstance(context).getMaxSize() / PREFETCH_CACHE_FRACTION);
     }
 
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.news_card, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        holder.mTitleView.setShadowLayer(mPadding /* radius */, 0, 0, 0 /* transparent */);
+        holder.mTitleView.setPadding(mPadding, mPadding, mPadding, mPadding);
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(final @NonNull NewsResultsViewAdapter.ViewHolder holder, int position) {
+        long bindStart = Metrics.startTimer();
 
         holder.mItem = mValues.get(position);
 
-        SpannableString titleSpan = new SpannableString(mValues.get(position).getTitle());
-
-        holder.mTitleView.setShadowLayer(mPadding /* radius */, 0, 0, 0 /* transparent */);
-        holder.mTitleView.setPadding(mPadding, mPadding, mPadding, mPadding);
-        titleSpan.setSpan(
-                new PaddingBackgroundColorSpan(ContextCompat.getColor(holder.mTitleView.getContext(), R.color.colorAccent),
-                        mPadding),
-                0, titleSpan.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-        holder.mTitleView.setText(titleSpan);
-
-        ArrayList<String> authorArray = holder.mItem.getAuthors();
-
-        String author_names = null;
-        // Let's handle the authors data. First check if author data was returned.
-        if(authorArray.isEmpty()){
-            // No data: set string appropriately.
-            author_names = holder.mView.getResources().getString(R.string.no_authors);
-        } else {
-            // Data returned. Begin a string builder and append authors (in case of multiple).
-            StringBuilder names_builder = new StringBuilder();
-            for (int authorNumber = 0; authorNumber < authorArray.size(); authorNumber++) {
-                if (authorNumber == 0) {
-                    names_builder.append(authorArray.get(authorNumber));
-                } else {
-                    names_builder.append(", " + authorArray.get(authorNumber));
-                }
-                author_names = names_builder.toString();
-            }
-        }
-
-        // Set text for author names.
-        holder.mAuthorView.setText(author_names);
-
-        // Get and set text for category
-
+        // Our display model was prepared in the background as our results arrived, so we only
+        // need to look it up and assign it.
+        NewsDisplayModel displayModel = mFormatter.getDisplayModel(holder.mItem);
+        holder.mTitleView.setText(displayModel.getTitle());
+        holder.mAuthorView.setText(displayModel.getAuthors());
         holder.mCategoryView.setText(holder.mItem.getSection());
-
-        // Set the url link for this article item
-
-        holder.mBrowserLinkView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                Intent openUrlInBrowser = new Intent(Intent.ACTION_VIEW, Uri.parse(holder.mItem.getArticleURL()));
-                holder.mBrowserLinkView.getContext().startActivity(openUrlInBrowser);
-            }
-        });
-
-        //Get and set the date
-
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        String parsedDate = null;
-
-        try {
-            Date date = dateFormat.parse(holder.mItem.getDatePublished());
-            DateFormat newDateFormat = new SimpleDateFormat("dd MMM, yyyy HH:mm");
-            parsedDate = newDateFormat.format(date);
-
-        } catch (ParseException e) {
-            Log.e(LOG_TAG, "Error parsing date.", e);
-            e.printStackTrace();
-        }
-        holder.mDateView.setText(parsedDate);
+        holder.mDateView.setText(displayModel.getDate());
 
         // Set up our thumbnail imageView object.
         ImageView imageView = (ImageView) holder.mThumbnailView;
@@ -131,40 +121,119 @@ public class NewsResultsViewAdapter extends RecyclerView.Adapter<NewsResultsView
         // Fetch the URL we will use for downloading our image
         String dataItem = holder.mItem.getThumbnailURL();
 
+        if (TextUtils.isEmpty(dataItem)) {
+            // This article has no thumbnail, so there is nothing to download or cache. Show our
+            // placeholder straight away, and make sure this view no longer waits on another.
+            mImageLoader.cancel(imageView);
+            holder.thumbnailProgressBar.setVisibility(View.INVISIBLE);
+            holder.mThumbnailView.setVisibility(View.VISIBLE);
+            holder.setThumbnail(nothumbnail);
+            BIND_TIME.recordMicrosSince(bindStart);
+            return;
+        }
+
         // -Begin edited code from https://stackoverflow.com/a/22855962/9738433-
-        BitmapDrawable image = CacheManager.getInstance().getBitmapFromMemCache(holder.mItem.getItemID());
+        BitmapDrawable image = CacheManager.getInstance(mContext).getBitmapFromMemCache(dataItem);
+        if (image instanceof RecyclingBitmapDrawable
+                && !((RecyclingBitmapDrawable) image).retain()) {
+            // Evicted since, and its bitmap may be decoded into. Load it again.
+            image = null;
+        }
 
         if(image != null) {
-            // We have results in our cache for this image. Hide the progress spinner and load the image
+            // We have results in our cache for this image. Make sure this view is no longer
+            // waiting on an earlier download, hide the progress spinner and load the image
+            mImageLoader.cancel(imageView);
             holder.thumbnailProgressBar.setVisibility(View.INVISIBLE);
             holder.mThumbnailView.setVisibility(View.VISIBLE);
             //I removed the custom ImageViews from the original code example
-            imageView.setImageDrawable(image);
+            holder.setThumbnail(image);
             imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
         } else {
-            //Images are not in cache for this item so begin our Async stream the thumbnail
+            //Images are not in cache for this item so queue the thumbnail with our image loader
             // Set up loading spinner on our thumbnail views
             holder.thumbnailProgressBar.setVisibility(View.VISIBLE);
             holder.mThumbnailView.setVisibility(View.INVISIBLE);
-            HashMap<Integer, String> imageAndViewPair = new HashMap<Integer, String>();
-            imageAndViewPair.put(holder.mThumbnailViewId, holder.mItem.getThumbnailURL());
-            loadImagesAsync(imageAndViewPair, holder.mView, holder.mItem.getItemID(), holder.thumbnailProgressBar);
+            holder.setThumbnail(null);
+            loadImage(dataItem, holder);
         }
         // -End edit code from https://stackoverflow.com/a/22855962/9738433-
+        BIND_TIME.recordMicrosSince(bindStart);
     }
 
-    // Override getItemViewType to prevent the random switch of images when scrolling.
+    // A single view type, so cards are recycled. Stale images can't show: a recycled card is
+    // reset in onViewRecycled, and binding cancels any download it was still waiting on.
     @Override
-    public int getItemViewType(int position) { return position; }
+    public int getItemViewType(int position) { return VIEW_TYPE_ARTICLE; }
 
     @Override
     public int getItemCount() {
         return mValues.size();
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(mFlingListener);
+        recyclerView.addOnScrollListener(mPrefetcher);
+        // A grid shows a card per span on every row, so it needs a pool per span.
+        int spanCount = recyclerView.getLayoutManager() instanceof GridLayoutManager
+                ? ((GridLayoutManager) recyclerView.getLayoutManager()).getSpanCount() : 1;
+        recyclerView.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_ARTICLE,
+                RECYCLED_CARDS_PER_SPAN * spanCount);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mFlingListener);
+        recyclerView.removeOnScrollListener(mPrefetcher);
+        // Our rows won't be seen anymore, so stop loading their thumbnails. Then don't leave
+        // our shared image loader paused (holding requests back) if we're swapped out mid fling.
+        for (ImageView thumbnail : getVisibleThumbnails(recyclerView)) {
+            mImageLoader.cancel(thumbnail);
+        }
+        mImageLoader.resume(Collections.<ImageView>emptyList());
+    }
+
+    /**
+     * @return the thumbnail views of the rows currently laid out in our list
+     */
+    private static List<ImageView> getVisibleThumbnails(RecyclerView recyclerView) {
+        List<ImageView> thumbnails = new ArrayList<>();
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            RecyclerView.ViewHolder holder =
+                    recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof ViewHolder) {
+                thumbnails.add(((ViewHolder) holder).mThumbnailView);
+            }
+        }
+        return thumbnails;
+    }
+
+    @Override
+    public void prefetchThumbnail(int position) {
+        mImageLoader.prefetch(mValues.get(position).getThumbnailURL(), mThumbnailWidth,
+                mThumbnailHeight);
+    }
+
+    @Override
+    public int getThumbnailByteCount() {
+        // Our image loader decodes thumbnails as RGB_565, 2 bytes a pixel.
+        return mThumbnailWidth * mThumbnailHeight * 2;
+    }
+
     @Override
     public void onViewRecycled(@NonNull ViewHolder holder) {
         super.onViewRecycled(holder);
+        // This view no longer needs its thumbnail. Cancel the download if nobody else does.
+        mImageLoader.cancel(holder.mThumbnailView);
+        // Reset our card, so its next row never shows this row's image or opens its article.
+        // Releasing the drawable also lets its bitmap be reused, once our cache evicts it.
+        holder.setThumbnail(null);
+        holder.mThumbnailView.setVisibility(View.INVISIBLE);
+        holder.thumbnailProgressBar.setVisibility(View.VISIBLE);
+        holder.mItem = null;
     }
 
     class ViewHolder extends RecyclerView.ViewHolder {
@@ -178,6 +247,8 @@ public class NewsResultsViewAdapter extends RecyclerView.Adapter<NewsResultsView
         final ImageView mThumbnailView;
         final ProgressBar thumbnailProgressBar;
         NewsItem mItem;
+        /** What our thumbnail view displays. Retained, if it's a RecyclingBitmapDrawable. */
+        private BitmapDrawable mThumbnail;
 
         ViewHolder(View view) {
             super(view);
@@ -190,41 +261,69 @@ public class NewsResultsViewAdapter extends RecyclerView.Adapter<NewsResultsView
             mThumbnailView = (ImageView) view.findViewById(R.id.thumbnail);
             mThumbnailViewId = R.id.thumbnail;
             thumbnailProgressBar = (ProgressBar) view.findViewById(R.id.thumb_progress_spinner);
+
+            // Set the url link for this article item. Created once per holder, and reads
+            // whichever item is currently bound.
+            mBrowserLinkView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    if (mItem == null) {
+                        // Recycled, and not bound to a new article yet.
+                        return;
+                    }
+                    Intent openUrlInBrowser = new Intent(Intent.ACTION_VIEW, Uri.parse(mItem.getArticleURL()));
+                    view.getContext().startActivity(openUrlInBrowser);
+                }
+            });
+        }
+
+        /**
+         * Display a thumbnail, releasing the one we displayed before.
+         * @param thumbnail the thumbnail, or null. A RecyclingBitmapDrawable must be retained.
+         */
+        void setThumbnail(BitmapDrawable thumbnail) {
+            if (mThumbnail instanceof RecyclingBitmapDrawable) {
+                ((RecyclingBitmapDrawable) mThumbnail).release();
+            }
+            mThumbnail = thumbnail;
+            mThumbnailView.setImageDrawable(thumbnail);
         }
     }
 
     // Altered image Async download code from:
     // https://android.jlelse.eu/async-loading-images-on-android-like-a-big-baws-fd97d1a91374
-    private void loadImagesAsync(final Map<Integer, String> bindings, final View view, final int id, final ProgressBar progressBar) {
-        for (final Map.Entry<Integer, String> binding :
-                bindings.entrySet()) {
-            new DownloadImageAsync(new DownloadImageAsync.Listener() {
-                ImageView thumbnailView = view.findViewById(binding.getKey());
-
-                @Override
-                public void onImageDownloaded(final Bitmap bitmap) {
-                    // Create a new bitmap drawable
-                    BitmapDrawable bitmapDrawable = new BitmapDrawable(mContext.getResources(), bitmap);
-                    //Add the drawable to our cache instance
-                    CacheManager.getInstance().addBitmapToMemoryCache(id, bitmapDrawable);
-                    //Set the drawable to our fragment thumbnail view
-                    thumbnailView.setImageDrawable(bitmapDrawable);
-                    //Show our thumbnail
-                    thumbnailView.setVisibility(View.VISIBLE);
-                    //Hide the UI progress spinner
-                    progressBar.setVisibility(View.INVISIBLE);
-                }
-                @Override
-                public void onImageDownloadError() {
-                    // Let's hide the thumbnail view since no image was returned.
-                    CacheManager.getInstance().addBitmapToMemoryCache(id, nothumbnail);
-                    thumbnailView.setImageDrawable(nothumbnail);
-                    thumbnailView.setVisibility(View.VISIBLE);
-                    progressBar.setVisibility(View.INVISIBLE);
-                    Log.e(LOG_TAG, "Failed to download image for "
-                            + binding.getKey());
-                }
-            }).execute(binding.getValue());
+    private void loadImage(final String url, final ViewHolder holder) {
+        final ImageView thumbnailView = holder.mThumbnailView;
+        final ProgressBar progressBar = holder.thumbnailProgressBar;
+        // Decode at the size we display at, rather than the full image resolution.
+        if (thumbnailView.getWidth() > 0 && thumbnailView.getHeight() > 0) {
+            mThumbnailWidth = thumbnailView.getWidth();
+            mThumbnailHeight = thumbnailView.getHeight();
         }
+        mImageLoader.load(url, mThumbnailWidth, mThumbnailHeight, thumbnailView, new ImageLoader.Listener() {
+            @Override
+            public void onImageLoaded(final BitmapDrawable bitmapDrawable) {
+                // Retained for as long as we display it. Our image loader holds it until we
+                // return, so this can't fail.
+                if (bitmapDrawable instanceof RecyclingBitmapDrawable) {
+                    ((RecyclingBitmapDrawable) bitmapDrawable).retain();
+                }
+                //Set the drawable to our fragment thumbnail view
+                holder.setThumbnail(bitmapDrawable);
+                //Show our thumbnail
+                thumbnailView.setVisibility(View.VISIBLE);
+                //Hide the UI progress spinner
+                progressBar.setVisibility(View.INVISIBLE);
+            }
+            @Override
+            public void onImageLoadError() {
+                // Let's show our placeholder thumbnail since no image was returned. It isn't
+                // cached under this URL: the failure may be transient, so the next bind retries.
+                holder.setThumbnail(nothumbnail);
+                thumbnailView.setVisibility(View.VISIBLE);
+                progressBar.setVisibility(View.INVISIBLE);
+                Log.e(LOG_TAG, "Failed to download image for " + url);
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -29,6 +29,17 @@ public class RecycleViewWithSetEmpty extends RecyclerView {
                 }
             }
         }
+
+        // Granular notifications can also empty (or fill) our list.
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onChanged();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onChanged();
+        }
     };
 
     public RecycleViewWithSetEmpty(Context context) {
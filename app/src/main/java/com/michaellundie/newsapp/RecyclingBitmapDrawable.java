@@ -0,0 +1,87 @@
+package com.michaellundie.newsapp;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+
+/**
+ * A decoded thumbnail which keeps count of who still uses its bitmap: our {@link CacheManager},
+ * and everyone displaying it (or about to). Only once neither does is the bitmap handed to our
+ * {@link BitmapPool} to be decoded into again, so a visible image is never overwritten.
+ * Adapted from the RecyclingBitmapDrawable in the "Managing Bitmap Memory" sample:
+ * https://developer.android.com/topic/performance/graphics/manage-memory
+ */
+public class RecyclingBitmapDrawable extends BitmapDrawable {
+
+    private final BitmapPool mBitmapPool;
+    private int mCacheRefCount = 0;
+    private int mDisplayRefCount = 0;
+    private boolean mHasBeenCached = false;
+    private boolean mPooled = false;
+
+    /**
+     * @param bitmapPool where our bitmap goes once no one uses it
+     */
+    public RecyclingBitmapDrawable(Resources res, Bitmap bitmap, BitmapPool bitmapPool) {
+        super(res, bitmap);
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Call when our cache starts or stops holding this drawable.
+     */
+    public void setIsCached(boolean isCached) {
+        boolean unused;
+        synchronized (this) {
+            if (isCached) {
+                mCacheRefCount++;
+                mHasBeenCached = true;
+            } else {
+                mCacheRefCount--;
+            }
+            unused = takeIfUnused();
+        }
+        // Pooled outside our lock, as our pool takes its own.
+        if (unused) {
+            mBitmapPool.put(getBitmap());
+        }
+    }
+
+    /**
+     * Call before displaying this drawable (or handing it to someone who will), and
+     * {@link #release()} once done with it.
+     * @return false if our bitmap has already gone to our pool, and must not be displayed
+     */
+    public synchronized boolean retain() {
+        if (mPooled) {
+            return false;
+        }
+        mDisplayRefCount++;
+        return true;
+    }
+
+    /**
+     * Call when a view stops displaying this drawable, for each successful {@link #retain()}.
+     */
+    public void release() {
+        boolean unused;
+        synchronized (this) {
+            mDisplayRefCount--;
+            unused = takeIfUnused();
+        }
+        if (unused) {
+            mBitmapPool.put(getBitmap());
+        }
+    }
+
+    /**
+     * @return true (once only) if our bitmap has left our cache and no one displays it anymore
+     */
+    private boolean takeIfUnused() {
+        if (mPooled || !mHasBeenCached || mCacheRefCount > 0 || mDisplayRefCount > 0) {
+            return false;
+        }
+        mPooled = true;
+        return true;
+    }
+}
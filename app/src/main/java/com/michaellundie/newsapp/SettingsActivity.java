@@ -1,6 +1,7 @@
 package com.michaellundie.newsapp;
 
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -15,6 +16,8 @@ import android.util.Log;
 import android.view.MenuItem;
 import android.widget.Toast;
 
+import com.michaellundie.newsapp.engine.Metrics;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,6 +34,9 @@ public class SettingsActivity extends AppCompatActivity {
     /** Stores the initial value (upon access of SettingActivity) of
      * {@link QueryPreferenceFragment#returnOrder}.*/
     private static String returnOrderInitialValue;
+    /** Stores the initial value (upon access of SettingActivity) of
+     * {@link QueryPreferenceFragment#topics}.*/
+    private static Set<String> topicsInitialValue;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,6 +61,7 @@ public class SettingsActivity extends AppCompatActivity {
 
         Preference returnQuantity;
         Preference returnOrder;
+        Preference topics;
 
         @Override
         public void onCreate(Bundle savedInstanceState) {
@@ -65,6 +72,41 @@ public class SettingsActivity extends AppCompatActivity {
             bindPreferenceSummaryToValue(returnQuantity);
             returnOrder = findPreference(getString(R.string.settings_orderby_key));
             bindPreferenceSummaryToValue(returnOrder);
+            topics = findPreference(getString(R.string.settings_topics_key));
+            bindPreferenceSummaryToValue(topics);
+            setUpDebugPreferences();
+        }
+
+        /**
+         * Our debug preferences turn metrics recording on and off, and show what was recorded.
+         * Only offered in debug builds.
+         */
+        private void setUpDebugPreferences() {
+            if (!BuildConfig.DEBUG) {
+                getPreferenceScreen().removePreference(
+                        findPreference(getString(R.string.settings_debug_key)));
+                return;
+            }
+            findPreference(getString(R.string.settings_record_metrics_key))
+                    .setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+                        @Override
+                        public boolean onPreferenceChange(Preference preference, Object value) {
+                            Metrics.setEnabled((Boolean) value);
+                            return true;
+                        }
+                    });
+            findPreference(getString(R.string.settings_show_metrics_key))
+                    .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                        @Override
+                        public boolean onPreferenceClick(Preference preference) {
+                            new AlertDialog.Builder(getActivity())
+                                    .setTitle(R.string.settings_show_metrics_label)
+                                    .setMessage(Metrics.dump())
+                                    .setPositiveButton(android.R.string.ok, null)
+                                    .show();
+                            return true;
+                        }
+                    });
         }
 
         /**
@@ -76,6 +118,14 @@ public class SettingsActivity extends AppCompatActivity {
             preference.setOnPreferenceChangeListener(this);
             SharedPreferences preferences =
                     PreferenceManager.getDefaultSharedPreferences(preference.getContext());
+            if (preference instanceof MultiSelectListPreference) {
+                // Multi select values are stored as a set of strings.
+                Set<String> preferenceValues = preferences.getStringSet(preference.getKey(),
+                        ((MultiSelectListPreference) preference).getValues());
+                topicsInitialValue = new HashSet<>(preferenceValues);
+                onPreferenceChange(preference, preferenceValues);
+                return;
+            }
             String preferenceValue = preferences.getString(preference.getKey(), "");
             if (preference == returnQuantity) {
                 returnQuantityInitialValue = preferenceValue;
@@ -95,13 +145,27 @@ public class SettingsActivity extends AppCompatActivity {
                     CharSequence[] labels = listPreference.getEntries();
                     preference.setSummary(labels[prefIndex]);
                 }
+            } else if (preference instanceof MultiSelectListPreference) {
+                // List the labels of every selected value.
+                MultiSelectListPreference listPreference = (MultiSelectListPreference) preference;
+                CharSequence[] values = listPreference.getEntryValues();
+                CharSequence[] labels = listPreference.getEntries();
+                StringBuilder summary = new StringBuilder();
+                for (int i = 0; i < values.length; i++) {
+                    if (((Set<?>) value).contains(values[i].toString())) {
+                        summary.append(summary.length() == 0 ? "" : ", ").append(labels[i]);
+                    }
+                }
+                preference.setSummary(summary);
             } else {
                 preference.setSummary(stringValue);
             }
 
             String key = preference.getKey();  // Check this returns string and not id
 
-            if (key.equals(getString(R.string.settings_orderby_key))) {
+            if (key.equals(getString(R.string.settings_topics_key))) {
+                settingsChanged = !value.equals(topicsInitialValue);
+            } else if (key.equals(getString(R.string.settings_orderby_key))) {
                 if (value.equals(returnOrderInitialValue)) {
                     settingsChanged = false;
                 } else {
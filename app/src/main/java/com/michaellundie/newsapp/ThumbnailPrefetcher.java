@@ -0,0 +1,135 @@
+package com.michaellundie.newsapp;
+
+import android.os.SystemClock;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Warms our image cache with the thumbnails of the rows about to scroll into view, so a user
+ * scrolling at a steady pace finds them ready rather than a loading spinner.
+ * How far ahead we look grows with the scroll velocity, within our budgets: a maximum number
+ * of rows ahead, a share of our image cache (so prefetched thumbnails don't push out those on
+ * screen), and a maximum number of prefetches in flight (so they leave bandwidth, and a worker,
+ * for the thumbnails of visible rows).
+ * Works with a {@link LinearLayoutManager}, or a {@link GridLayoutManager} (a row is then a
+ * whole line of spans).
+ */
+class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+
+    /** We prefetch the rows we'll reach within this time, at our current velocity. */
+    private static final float LOOK_AHEAD_SECONDS = 1.5f;
+    /** The weight of the latest scroll event in our smoothed velocity. */
+    private static final float VELOCITY_SMOOTHING = 0.3f;
+
+    /**
+     * Provides the thumbnails of our list's items.
+     */
+    interface Source {
+        int getItemCount();
+
+        /**
+         * Start loading the thumbnail of the item at the given position, if it needs loading.
+         */
+        void prefetchThumbnail(int position);
+
+        /**
+         * @return the memory a decoded thumbnail takes, in bytes
+         */
+        int getThumbnailByteCount();
+    }
+
+    private final Source mSource;
+    private final ImageLoader mImageLoader;
+    private final int mMaxRowsAhead;
+    private final int mMaxInFlight;
+    private final int mMemoryBudgetBytes;
+    /** Our smoothed scroll velocity, in pixels per second. Negative towards the start. */
+    private float mVelocity = 0;
+    private long mLastScrollTime = 0;
+    private boolean mForward = true;
+
+    /**
+     * @param source provides our thumbnails
+     * @param imageLoader the loader our source prefetches with
+     * @param maxRowsAhead the most rows ahead of the visible ones we prefetch
+     * @param maxInFlight the most prefetches we have downloading at once
+     * @param memoryBudgetBytes the most memory the thumbnails we look ahead to may take
+     */
+    ThumbnailPrefetcher(Source source, ImageLoader imageLoader, int maxRowsAhead,
+                        int maxInFlight, int memoryBudgetBytes) {
+        mSource = source;
+        mImageLoader = imageLoader;
+        mMaxRowsAhead = maxRowsAhead;
+        mMaxInFlight = maxInFlight;
+        mMemoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            // The next scroll starts from rest.
+            mVelocity = 0;
+            mLastScrollTime = 0;
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        boolean vertical = layoutManager.getOrientation() == LinearLayoutManager.VERTICAL;
+        int delta = vertical ? dy : dx;
+        View firstChild = recyclerView.getChildAt(0);
+        // Layout passes report a scroll of 0. Nothing is moving.
+        if (delta == 0 || firstChild == null) {
+            return;
+        }
+
+        boolean forward = delta > 0;
+        if (forward != mForward) {
+            // What we prefetched ahead of us is now behind us.
+            mForward = forward;
+            mImageLoader.cancelPrefetches();
+            mVelocity = 0;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (mLastScrollTime != 0 && now > mLastScrollTime) {
+            float velocity = delta * 1000f / (now - mLastScrollTime);
+            mVelocity += VELOCITY_SMOOTHING * (velocity - mVelocity);
+        }
+        mLastScrollTime = now;
+
+        int rowSize = vertical ? firstChild.getHeight() : firstChild.getWidth();
+        if (rowSize <= 0) {
+            return;
+        }
+        int rowsAhead = (int) Math.ceil(Math.abs(mVelocity) / rowSize * LOOK_AHEAD_SECONDS);
+        rowsAhead = Math.min(mMaxRowsAhead, Math.max(1, rowsAhead));
+        int spanCount = layoutManager instanceof GridLayoutManager
+                ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+        int thumbnailBytes = mSource.getThumbnailByteCount();
+        if (thumbnailBytes > 0) {
+            rowsAhead = Math.min(rowsAhead, mMemoryBudgetBytes / thumbnailBytes / spanCount);
+        }
+
+        int edge = forward ? layoutManager.findLastVisibleItemPosition()
+                : layoutManager.findFirstVisibleItemPosition();
+        if (edge == RecyclerView.NO_POSITION) {
+            return;
+        }
+        // Nearest first, so our in flight budget goes to the rows we reach soonest.
+        int step = forward ? 1 : -1;
+        for (int i = 1; i <= rowsAhead * spanCount; i++) {
+            int position = edge + step * i;
+            if (position < 0 || position >= mSource.getItemCount()
+                    || mImageLoader.getPrefetchCount() >= mMaxInFlight) {
+                break;
+            }
+            mSource.prefetchThumbnail(position);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures {@link CacheManager} lookups and inserts from several threads, with more distinct
+ * thumbnails than fit in the cache, so evictions happen continuously.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class CacheManagerBenchmark {
+
+    private static final int THUMBNAIL_COUNT = 200;
+
+    private String[] urls;
+    private BitmapDrawable[] drawables;
+    private CacheManager cacheManager;
+
+    @Setup
+    public void setUp() {
+        urls = new String[THUMBNAIL_COUNT];
+        drawables = new BitmapDrawable[THUMBNAIL_COUNT];
+        for (int i = 0; i < THUMBNAIL_COUNT; i++) {
+            urls[i] = "https://media.guim.co.uk/" + i + "/500.jpg";
+            drawables[i] = new BitmapDrawable(null,
+                    Bitmap.createBitmap(540, 300, Bitmap.Config.RGB_565));
+        }
+        cacheManager = CacheManager.getInstance(new Context());
+        cacheManager.clear();
+    }
+
+    @Benchmark
+    public BitmapDrawable getOrPut() {
+        int index = ThreadLocalRandom.current().nextInt(THUMBNAIL_COUNT);
+        BitmapDrawable cached = cacheManager.getBitmapFromMemCache(urls[index]);
+        if (cached == null) {
+            cacheManager.addBitmapToMemoryCache(urls[index], drawables[index]);
+            return drawables[index];
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,50 @@
+package com.michaellundie.newsapp;
+
+import android.content.Context;
+
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+
+/**
+ * Measures preparing the card display model (date, author line and styled title) for a page
+ * of articles, the work which used to happen in every onBindViewHolder, and looking up the
+ * prepared models, which is all a bind does now. With the gc profiler, the lookup should
+ * report no allocation (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+public class DisplayFormatBenchmark {
+
+    private ArrayList<NewsItem> articles;
+    private NewsDisplayFormatter formatter;
+
+    @Setup
+    public void setUp() {
+        articles = SyntheticFeed.articles(50);
+        formatter = new NewsDisplayFormatter(new Context());
+        formatter.format(articles);
+    }
+
+    @Benchmark
+    public NewsDisplayModel formatPage() {
+        NewsDisplayModel model = null;
+        for (NewsItem article : articles) {
+            model = formatter.createDisplayModel(article);
+        }
+        return model;
+    }
+
+    @Benchmark
+    public NewsDisplayModel lookUpFormattedPage() {
+        NewsDisplayModel model = null;
+        for (NewsItem article : articles) {
+            model = formatter.getDisplayModel(article);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,59 @@
+package com.michaellundie.newsapp;
+
+import com.michaellundie.newsapp.engine.FeedParser;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Measures the heap retained by a parsed feed. JMH's gc profiler reports allocation rates, but
+ * not what a result list keeps alive, so this runs as a plain program instead.
+ *
+ * Run with: ./gradlew :benchmarks:heapFootprint
+ */
+public final class FeedHeapFootprint {
+
+    private static final int ARTICLE_COUNT = 1000;
+    private static final int RUNS = 7;
+
+    private FeedHeapFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int articleCount = args.length > 0 ? Integer.parseInt(args[0]) : ARTICLE_COUNT;
+        byte[] response = SyntheticFeed.response(articleCount);
+        // Warm up, so class loading and JIT allocations aren't counted.
+        FeedParser.parse(new ByteArrayInputStream(response));
+
+        long[] retained = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long before = usedHeap();
+            ArrayList<NewsItem> results = FeedParser.parse(new ByteArrayInputStream(response));
+            long after = usedHeap();
+            retained[run] = after - before;
+            if (results.size() != articleCount) {
+                throw new IllegalStateException("Parsed " + results.size() + " articles");
+            }
+        }
+        Arrays.sort(retained);
+        long median = retained[RUNS / 2];
+        System.out.println(articleCount + " articles retain " + median + " bytes ("
+                + (median / articleCount) + " bytes per article)");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,36 @@
+package com.michaellundie.newsapp;
+
+import com.michaellundie.newsapp.engine.FeedParser;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Measures {@link FeedParser#parse} on search responses of increasing size.
+ */
+@State(Scope.Benchmark)
+public class FeedParseBenchmark {
+
+    @Param({"10", "50", "200", "1000"})
+    public int articleCount;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        response = SyntheticFeed.response(articleCount);
+    }
+
+    @Benchmark
+    public ArrayList<NewsItem> parse() throws IOException {
+        return FeedParser.parse(new ByteArrayInputStream(response));
+    }
+}
@@ -0,0 +1,54 @@
+package com.michaellundie.newsapp;
+
+import com.michaellundie.newsapp.engine.NewsItem;
+import com.michaellundie.newsapp.engine.NewsListCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Measures encoding and decoding a result list with {@link NewsListCodec}, as done when our
+ * activity state is saved and restored, and when feed snapshots are written and read.
+ */
+@State(Scope.Benchmark)
+public class NewsListCodecBenchmark {
+
+    @Param({"16", "50", "200"})
+    public int articleCount;
+
+    private ArrayList<NewsItem> articles;
+    private byte[] encoded;
+    private ByteBuffer directBuffer;
+
+    @Setup
+    public void setUp() {
+        articles = SyntheticFeed.articles(articleCount);
+        encoded = NewsListCodec.encode(articles);
+        // Stands in for a memory mapped file.
+        directBuffer = ByteBuffer.allocateDirect(encoded.length);
+        directBuffer.put(encoded);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return NewsListCodec.encode(articles);
+    }
+
+    @Benchmark
+    public ArrayList<NewsItem> decodeHeapBuffer() throws IOException {
+        return NewsListCodec.decode(ByteBuffer.wrap(encoded));
+    }
+
+    @Benchmark
+    public ArrayList<NewsItem> decodeDirectBuffer() throws IOException {
+        directBuffer.rewind();
+        return NewsListCodec.decode(directBuffer);
+    }
+}
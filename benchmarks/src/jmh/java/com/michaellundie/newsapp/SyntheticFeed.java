@@ -0,0 +1,100 @@
+package com.michaellundie.newsapp;
+
+import com.michaellundie.newsapp.engine.FeedDates;
+import com.michaellundie.newsapp.engine.NewsItem;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates Guardian search responses and articles of a given size for our benchmarks. The
+ * content is random but shaped like real results: a handful of sections, zero to three
+ * contributors per article and a thumbnail for most of them.
+ */
+final class SyntheticFeed {
+
+    private static final String[] SECTIONS =
+            {"Technology", "Business", "Science", "World news", "Media", "Games"};
+    private static final String[] AUTHORS =
+            {"Alex Hern", "Samuel Gibbs", "Jane Doe", "John Naughton", "Kari Paul", "Dan Milmo"};
+
+    private SyntheticFeed() {
+    }
+
+    /**
+     * @param articleCount the number of articles in the results array
+     * @return a UTF-8 encoded search response
+     */
+    static byte[] response(int articleCount) {
+        Random random = new Random(articleCount);
+        StringBuilder json = new StringBuilder(articleCount * 900);
+        json.append("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\",\"total\":")
+                .append(articleCount)
+                .append(",\"startIndex\":1,\"pageSize\":").append(articleCount)
+                .append(",\"currentPage\":1,\"pages\":1,\"orderBy\":\"newest\",\"results\":[");
+        for (int i = 0; i < articleCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String section = SECTIONS[random.nextInt(SECTIONS.length)];
+            String id = section.toLowerCase().replace(' ', '-') + "/2018/may/" + i + "/article-" + i;
+            json.append("{\"id\":\"").append(id)
+                    .append("\",\"type\":\"article\",\"sectionId\":\"")
+                    .append(section.toLowerCase().replace(' ', '-'))
+                    .append("\",\"sectionName\":\"").append(section)
+                    .append("\",\"webPublicationDate\":\"").append(date(i))
+                    .append("\",\"webTitle\":\"Synthetic headline number ").append(i)
+                    .append(" about something happening in ").append(section)
+                    .append("\",\"webUrl\":\"https://www.theguardian.com/").append(id)
+                    .append("\",\"apiUrl\":\"https://content.guardianapis.com/").append(id)
+                    .append('"');
+            if (random.nextInt(10) > 0) {
+                json.append(",\"fields\":{\"thumbnail\":\"https://media.guim.co.uk/")
+                        .append(Integer.toHexString(random.nextInt()))
+                        .append("/0_0_5000_3000/500.jpg\"}");
+            }
+            json.append(",\"tags\":[");
+            int authorCount = random.nextInt(4);
+            for (int a = 0; a < authorCount; a++) {
+                if (a > 0) {
+                    json.append(',');
+                }
+                String author = AUTHORS[random.nextInt(AUTHORS.length)];
+                json.append("{\"id\":\"profile/").append(author.toLowerCase().replace(' ', '-'))
+                        .append("\",\"type\":\"contributor\",\"webTitle\":\"").append(author)
+                        .append("\",\"webUrl\":\"https://www.theguardian.com/profile/")
+                        .append(author.toLowerCase().replace(' ', '-')).append("\"}");
+            }
+            json.append("],\"isHosted\":false,\"pillarId\":\"pillar/news\",\"pillarName\":\"News\"}");
+        }
+        json.append("]}}");
+        return json.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * @param articleCount the number of articles to create
+     * @return parsed articles, as they would be delivered by our loader
+     */
+    static ArrayList<NewsItem> articles(int articleCount) {
+        Random random = new Random(articleCount);
+        ArrayList<NewsItem> articles = new ArrayList<>(articleCount);
+        for (int i = 0; i < articleCount; i++) {
+            String section = SECTIONS[random.nextInt(SECTIONS.length)];
+            String[] authors = new String[random.nextInt(4)];
+            for (int a = 0; a < authors.length; a++) {
+                authors[a] = AUTHORS[random.nextInt(AUTHORS.length)];
+            }
+            String id = section.toLowerCase().replace(' ', '-') + "/2018/may/" + i + "/article-" + i;
+            articles.add(new NewsItem(id, "Synthetic headline number " + i, authors, section,
+                    FeedDates.parseIso(date(i)), "https://media.guim.co.uk/" + i + "/500.jpg",
+                    "https://www.theguardian.com/" + id, i));
+        }
+        return articles;
+    }
+
+    private static String date(int index) {
+        return String.format("2018-05-%02dT%02d:%02d:00Z", 1 + (index / 1440) % 28,
+                (index / 60) % 24, index % 60);
+    }
+}
@@ -0,0 +1,9 @@
+package android.app;
+
+/**
+ * Android-free stand-in, providing only what our benchmarked code calls.
+ */
+public class ActivityManager {
+    /** A typical mid-range phone. */
+    public int getMemoryClass() { return 64; }
+}
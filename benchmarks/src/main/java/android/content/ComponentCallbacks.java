@@ -0,0 +1,12 @@
+package android.content;
+
+import android.content.res.Configuration;
+
+/**
+ * Android-free stand-in, providing only what our benchmarked code calls.
+ */
+public interface ComponentCallbacks {
+    void onConfigurationChanged(Configuration newConfig);
+
+    void onLowMemory();
+}
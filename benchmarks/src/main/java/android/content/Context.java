@@ -0,0 +1,33 @@
+package android.content;
+
+import android.app.ActivityManager;
+import android.content.res.Resources;
+
+import java.io.File;
+
+/**
+ * Android-free stand-in, providing only what our benchmarked code calls.
+ */
+public class Context {
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+    public static final String ACTIVITY_SERVICE = "activity";
+
+    private final Resources mResources = new Resources();
+    private final File mCacheDir;
+
+    public Context() {
+        mCacheDir = new File(System.getProperty("java.io.tmpdir"), "newsapp-benchmarks");
+    }
+
+    public Context getApplicationContext() { return this; }
+
+    public Resources getResources() { return mResources; }
+
+    public File getCacheDir() { return mCacheDir; }
+
+    public Object getSystemService(String name) {
+        return ACTIVITY_SERVICE.equals(name) ? new ActivityManager() : null;
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) { }
+}
@@ -0,0 +1,7 @@
+package android.content.res;
+
+/**
+ * Android-free stand-in, providing only what our benchmarked code calls.
+ */
+public class Configuration {
+}
@@ -0,0 +1,22 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+/**
+ * Android-free stand-in. Returns fixed values for the resources our benchmarked code reads.
+ */
+public class Resources {
+    private final DisplayMetrics mDisplayMetrics = new DisplayMetrics();
+
+    public String getString(int id) {
+        return "res-" + id;
+    }
+
+    public float getDimension(int id) {
+        return 1f;
+    }
+
+    public DisplayMetrics getDisplayMetrics() {
+        return mDisplayMetrics;
+    }
+}
@@ -0,0 +1,47 @@
+package android.graphics;
+
+/**
+ * Android-free stand-in. Only tracks the dimensions and configuration which our cache sizing
+ * depends on; no pixel memory is allocated.
+ */
+public final class Bitmap {
+    public enum Config {
+        ALPHA_8,
+        RGB_565,
+        ARGB_4444,
+        ARGB_8888
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Config mConfig;
+    private final boolean mMutable;
+
+    private Bitmap(int width, int height, Config config, boolean mutable) {
+        mWidth = width;
+        mHeight = height;
+        mConfig = config;
+        mMutable = mutable;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, config, true);
+    }
+
+    public int getWidth() { return mWidth; }
+
+    public int getHeight() { return mHeight; }
+
+    public Config getConfig() { return mConfig; }
+
+    public boolean isMutable() { return mMutable; }
+
+    public boolean isRecycled() { return false; }
+
+    public int getByteCount() {
+        int bytesPerPixel = mConfig == Config.ARGB_8888 ? 4 : (mConfig == Config.ALPHA_8 ? 1 : 2);
+        return mWidth * mHeight * bytesPerPixel;
+    }
+
+    public int getAllocationByteCount() { return getByteCount(); }
+}
@@ -0,0 +1,16 @@
+package android.graphics;
+
+/**
+ * Android-free stand-in, holding the decode options our bitmap pool inspects.
+ */
+public class BitmapFactory {
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public boolean inMutable;
+        public Bitmap inBitmap;
+        public Bitmap.Config inPreferredConfig = Bitmap.Config.ARGB_8888;
+        public int outWidth;
+        public int outHeight;
+    }
+}
@@ -0,0 +1,9 @@
+package android.graphics;
+
+/**
+ * Android-free stand-in.
+ */
+public class Canvas {
+    public void drawRect(Rect rect, Paint paint) {
+    }
+}
@@ -0,0 +1,16 @@
+package android.graphics;
+
+/**
+ * Android-free stand-in.
+ */
+public class Paint {
+    private int mColor;
+
+    public int getColor() { return mColor; }
+
+    public void setColor(int color) { mColor = color; }
+
+    public float measureText(CharSequence text, int start, int end) {
+        return (end - start) * 10f;
+    }
+}
@@ -0,0 +1,18 @@
+package android.graphics;
+
+/**
+ * Android-free stand-in.
+ */
+public class Rect {
+    public int left;
+    public int top;
+    public int right;
+    public int bottom;
+
+    public void set(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+}
@@ -0,0 +1,19 @@
+package android.graphics.drawable;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+
+/**
+ * Android-free stand-in.
+ */
+public class BitmapDrawable {
+    private final Bitmap mBitmap;
+
+    public BitmapDrawable(Resources res, Bitmap bitmap) {
+        mBitmap = bitmap;
+    }
+
+    public final Bitmap getBitmap() {
+        return mBitmap;
+    }
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * Android-free stand-in. Reports the SDK level we target.
+ */
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 27;
+    }
+
+    public static class VERSION_CODES {
+        public static final int KITKAT = 19;
+    }
+}
@@ -0,0 +1,10 @@
+package android.text;
+
+/**
+ * Android-free stand-in.
+ */
+public interface Spannable extends CharSequence {
+    int SPAN_EXCLUSIVE_EXCLUSIVE = 0x21;
+
+    void setSpan(Object what, int start, int end, int flags);
+}
@@ -0,0 +1,49 @@
+package android.text;
+
+/**
+ * Android-free stand-in. Keeps its spans in a growable array, like the framework class.
+ */
+public class SpannableString implements Spannable {
+    private final String mText;
+    private Object[] mSpans = new Object[0];
+    private int[] mSpanData = new int[0];
+
+    public SpannableString(CharSequence source) {
+        mText = source.toString();
+    }
+
+    @Override
+    public void setSpan(Object what, int start, int end, int flags) {
+        int count = mSpans.length;
+        Object[] spans = new Object[count + 1];
+        int[] spanData = new int[(count + 1) * 3];
+        System.arraycopy(mSpans, 0, spans, 0, count);
+        System.arraycopy(mSpanData, 0, spanData, 0, count * 3);
+        spans[count] = what;
+        spanData[count * 3] = start;
+        spanData[count * 3 + 1] = end;
+        spanData[count * 3 + 2] = flags;
+        mSpans = spans;
+        mSpanData = spanData;
+    }
+
+    @Override
+    public int length() {
+        return mText.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return mText.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return mText.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return mText;
+    }
+}
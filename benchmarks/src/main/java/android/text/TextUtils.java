@@ -0,0 +1,40 @@
+package android.text;
+
+import java.util.ArrayList;
+
+/**
+ * Android-free stand-in, with the same behaviour as the framework helpers we use.
+ */
+public class TextUtils {
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static boolean equals(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.toString().equals(b.toString());
+    }
+
+    public static String join(CharSequence delimiter, Object[] tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            sb.append(tokens[i]);
+        }
+        return sb.toString();
+    }
+
+    public static String[] split(String text, String expression) {
+        if (text.length() == 0) {
+            return new String[0];
+        }
+        return text.split(expression, -1);
+    }
+}
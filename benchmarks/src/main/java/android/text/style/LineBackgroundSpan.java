@@ -0,0 +1,12 @@
+package android.text.style;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Android-free stand-in.
+ */
+public interface LineBackgroundSpan {
+    void drawBackground(Canvas c, Paint p, int left, int right, int top, int baseline,
+                        int bottom, CharSequence text, int start, int end, int lnum);
+}
@@ -0,0 +1,10 @@
+package android.util;
+
+/**
+ * Android-free stand-in, describing an xxhdpi phone.
+ */
+public class DisplayMetrics {
+    public float density = 3f;
+    public int widthPixels = 1080;
+    public int heightPixels = 1920;
+}
@@ -0,0 +1,17 @@
+package android.util;
+
+/**
+ * Android-free stand-in. Logging is a no-op, so it doesn't skew our measurements.
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int i(String tag, String msg) { return 0; }
+
+    public static int d(String tag, String msg) { return 0; }
+
+    public static int e(String tag, String msg) { return 0; }
+
+    public static int e(String tag, String msg, Throwable tr) { return 0; }
+}
@@ -0,0 +1,13 @@
+package android.util;
+
+/**
+ * Android-free stand-in.
+ */
+public class TypedValue {
+    public static final int COMPLEX_UNIT_PX = 0;
+    public static final int COMPLEX_UNIT_DIP = 1;
+
+    public static float applyDimension(int unit, float value, DisplayMetrics metrics) {
+        return unit == COMPLEX_UNIT_DIP ? value * metrics.density : value;
+    }
+}
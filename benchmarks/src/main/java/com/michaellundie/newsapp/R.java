@@ -0,0 +1,31 @@
+package com.michaellundie.newsapp;
+
+/**
+ * Android-free stand-in for the generated resource class, covering the resources used by the
+ * app sources we benchmark.
+ */
+public final class R {
+    public static final class color {
+        public static final int colorAccent = 0x7f040000;
+    }
+
+    public static final class dimen {
+        public static final int text_padding = 0x7f050000;
+    }
+
+    public static final class string {
+        public static final int api_authority = 0x7f0b0000;
+        public static final int api_fromDate_param = 0x7f0b0001;
+        public static final int api_key_param = 0x7f0b0002;
+        public static final int api_key_value = 0x7f0b0003;
+        public static final int api_page_param = 0x7f0b0004;
+        public static final int api_query_param = 0x7f0b0005;
+        public static final int api_return_param = 0x7f0b0006;
+        public static final int api_search_path = 0x7f0b0007;
+        public static final int api_showFields_param = 0x7f0b0008;
+        public static final int api_showFields_thumbnail_value = 0x7f0b0009;
+        public static final int api_showTags_contributor_value = 0x7f0b000a;
+        public static final int api_showTags_param = 0x7f0b000b;
+        public static final int no_authors = 0x7f0b000c;
+    }
+}
@@ -0,0 +1,103 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the parsed results of recent requests in memory, in front of another engine.
+ * Flipping between settings the user has just viewed is then answered straight away, with no
+ * network request and no parsing.
+ * Results are keyed by request URL ({@link FeedRequest#toUrl()} always writes the same request
+ * the same way), expire after a fixed time to live, and the least recently used results are
+ * evicted once we hold our maximum number of requests.
+ */
+public class CachingFeedEngine implements FeedEngine {
+
+    private static final Metrics.Counter HITS = Metrics.counter("feed.memoryCache.hits");
+    private static final Metrics.Counter MISSES = Metrics.counter("feed.memoryCache.misses");
+
+    private final FeedEngine engine;
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<String, CachedResult> entries;
+
+    /**
+     * @param engine the engine results are fetched with when we don't hold them
+     * @param maxEntries the number of requests we hold results for
+     * @param timeToLiveMillis how long results are served from memory
+     */
+    public CachingFeedEngine(FeedEngine engine, final int maxEntries, long timeToLiveMillis) {
+        this.engine = engine;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+        // Access ordered, so our eldest entry is the least recently used.
+        this.entries = new LinkedHashMap<String, CachedResult>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the results held for the request while they are fresh. Otherwise
+     * fetches them, and holds them for next time.
+     */
+    @Override
+    public ArrayList<NewsItem> fetch(FeedRequest request, CancellationToken cancellation)
+            throws IOException {
+        String key = request.toUrl();
+        synchronized (this) {
+            CachedResult entry = entries.get(key);
+            if (entry != null) {
+                if (nanoTime() - entry.storedNanos < timeToLiveNanos) {
+                    HITS.increment();
+                    // A copy, so our callers can't change what we hold.
+                    return new ArrayList<>(entry.items);
+                }
+                entries.remove(key);
+            }
+        }
+        MISSES.increment();
+        // Not holding our lock while we wait on the network.
+        ArrayList<NewsItem> items = engine.fetch(request, cancellation);
+        if (items != null) {
+            synchronized (this) {
+                entries.put(key, new CachedResult(new ArrayList<>(items), nanoTime()));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Drops every result we hold, e.g. when the user asks for a refresh.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of requests we currently hold results for, fresh or not
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Our clock. Monotonic, so changes to the wall clock don't expire (or keep) results.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static final class CachedResult {
+        final ArrayList<NewsItem> items;
+        final long storedNanos;
+
+        CachedResult(ArrayList<NewsItem> items, long storedNanos) {
+            this.items = items;
+            this.storedNanos = storedNanos;
+        }
+    }
+}
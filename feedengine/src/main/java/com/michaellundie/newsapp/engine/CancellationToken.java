@@ -0,0 +1,81 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Lets one thread cancel a fetch running on another, e.g. when the results it would load are no
+ * longer wanted. Cancelling closes the resources registered by the fetch (which aborts any
+ * blocked connect or read straight away), and the fetch then fails with a
+ * {@link FeedCanceledException}. A token can only be cancelled once, and stays cancelled.
+ */
+public final class CancellationToken {
+
+    private final ArrayList<Closeable> resources = new ArrayList<>();
+    private boolean canceled = false;
+
+    /**
+     * Cancels the fetch, closing every resource registered with us.
+     */
+    public void cancel() {
+        ArrayList<Closeable> toClose;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+        // Not holding our lock, as closing may take a moment.
+        for (Closeable resource : toClose) {
+            closeQuietly(resource);
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * @throws FeedCanceledException if we have been cancelled
+     */
+    public void throwIfCanceled() throws FeedCanceledException {
+        if (isCanceled()) {
+            throw new FeedCanceledException();
+        }
+    }
+
+    /**
+     * Has a resource closed if we are cancelled, until it is unregistered. Resources must be
+     * unregistered once they are finished with, so a late cancel doesn't close them.
+     * @param resource the resource to close, e.g. a connection
+     * @throws FeedCanceledException if we are already cancelled. The resource is closed.
+     */
+    public void register(Closeable resource) throws FeedCanceledException {
+        synchronized (this) {
+            if (!canceled) {
+                resources.add(resource);
+                return;
+            }
+        }
+        closeQuietly(resource);
+        throw new FeedCanceledException();
+    }
+
+    /**
+     * @param resource a resource passed to {@link #register(Closeable)}
+     */
+    public synchronized void unregister(Closeable resource) {
+        resources.remove(resource);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            // We were only closing it to stop it. Nothing more to do.
+        }
+    }
+}
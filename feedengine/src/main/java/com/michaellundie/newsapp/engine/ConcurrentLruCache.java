@@ -0,0 +1,396 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A size bounded, least recently used cache which can be shared by many threads.
+ * Keys are spread over a number of segments, each with its own lock and its own share of our
+ * maximum size, so threads working on different keys rarely wait on each other. Recency is
+ * therefore tracked per segment: we evict the least recently used entry of the segment that
+ * went over its share, which is close to (but not exactly) the least recently used overall.
+ *
+ * {@link #getOrLoad(Object, Loader)} loads each missing key once: callers asking for a key
+ * which is already being loaded wait for that load, rather than starting their own. Loads run
+ * without holding a segment lock.
+ *
+ * Like android.util.LruCache, override {@link #sizeOf(Object, Object)} to measure entries in
+ * something other than a count, and {@link #entryRemoved(boolean, Object, Object, Object)} to
+ * hear about entries leaving the cache. Null keys and values aren't allowed.
+ */
+public class ConcurrentLruCache<K, V> {
+
+    /**
+     * Creates the value for a key which isn't cached.
+     */
+    public interface Loader<K, V> {
+        /**
+         * @param key the key to load
+         * @return the value, or null if there is none. Null values aren't cached.
+         */
+        V load(K key) throws IOException;
+    }
+
+    private final List<Segment> segments;
+    private final int segmentMask;
+
+    /**
+     * @param maxSize the maximum size of the cache, in the units of {@link #sizeOf}
+     * @param concurrencyLevel the number of threads expected to use the cache at once. Rounded
+     *                         up to a power of two, and to at most one segment per unit of size.
+     */
+    public ConcurrentLruCache(int maxSize, int concurrencyLevel) {
+        this(maxSize, concurrencyLevel, 1);
+    }
+
+    /**
+     * As each segment enforces its own share of our maximum size, an entry larger than that
+     * share is evicted as soon as it is inserted, however much room the cache as a whole has.
+     * Caches holding large entries should pass the largest entry they expect to keep (or a few
+     * of them) as minSegmentSize: we then use fewer segments, down to a single one, rather than
+     * split our size any finer.
+     *
+     * @param maxSize the maximum size of the cache, in the units of {@link #sizeOf}
+     * @param concurrencyLevel the number of threads expected to use the cache at once. Rounded
+     *                         up to a power of two, and to at most one segment per
+     *                         minSegmentSize.
+     * @param minSegmentSize the smallest share of our maximum size a segment may have
+     */
+    public ConcurrentLruCache(int maxSize, int concurrencyLevel, int minSegmentSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (minSegmentSize <= 0) {
+            throw new IllegalArgumentException("minSegmentSize <= 0");
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel
+                && maxSize / (segmentCount * 2) >= minSegmentSize) {
+            segmentCount *= 2;
+        }
+        segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            // Spread any remainder, so our segments add up to our maximum size.
+            segments.add(new Segment(
+                    maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0)));
+        }
+        segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * @return the cached value for the key, or null. Marks the entry as recently used.
+     */
+    public final V get(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.map.get(key);
+        }
+    }
+
+    /**
+     * Caches a value, replacing any value cached for the key.
+     * @return the value previously cached for the key, or null
+     */
+    public final V put(K key, V value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * Caches a value unless the key already has one, as a single step.
+     * @return the value already cached for the key (which is kept), or null if ours was cached
+     */
+    public final V putIfAbsent(K key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Returns the cached value for the key, loading (and caching) it if there is none.
+     * If another thread is already loading the key we wait for its result instead, so a key is
+     * never loaded twice at the same time.
+     * @param key the key to look up
+     * @param loader creates the value if it isn't cached
+     * @return the value, or null if the loader found none
+     * @throws IOException if the load failed, ours or the one we waited on
+     */
+    public final V getOrLoad(K key, Loader<? super K, ? extends V> loader) throws IOException {
+        Segment segment = segmentFor(key);
+        Load load;
+        Load pending;
+        synchronized (segment) {
+            V value = segment.map.get(key);
+            if (value != null) {
+                return value;
+            }
+            pending = segment.loads.get(key);
+            load = pending == null ? new Load() : pending;
+            if (pending == null) {
+                segment.loads.put(key, load);
+            }
+        }
+        if (pending != null) {
+            // Someone else is loading it. Wait for their result, outside our lock.
+            return pending.await(key);
+        }
+
+        V value = null;
+        Throwable failure = null;
+        try {
+            value = loader.load(key);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            List<Evicted> evicted = null;
+            synchronized (segment) {
+                // Cached before the load is dropped, so no one can miss both and load again.
+                if (value != null) {
+                    evicted = segment.put(key, value, true);
+                }
+                segment.loads.remove(key);
+            }
+            load.complete(value, failure);
+            notifyRemoved(evicted);
+        }
+    }
+
+    /**
+     * Removes the entry for the key, if there is one.
+     * @return the removed value, or null
+     */
+    public final V remove(K key) {
+        Segment segment = segmentFor(key);
+        V previous;
+        synchronized (segment) {
+            previous = segment.map.remove(key);
+            if (previous != null) {
+                segment.size -= safeSizeOf(key, previous);
+            }
+        }
+        if (previous != null) {
+            entryRemoved(false, key, previous, null);
+        }
+        return previous;
+    }
+
+    /**
+     * Evicts least recently used entries until the cache is no larger than the given size.
+     * Each segment is trimmed to its share of that size.
+     * @param maxSize the size to trim to, or -1 to evict everything
+     */
+    public final void trimToSize(int maxSize) {
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            int segmentMaxSize = maxSize < 0 ? -1
+                    : maxSize / segments.size() + (i < maxSize % segments.size() ? 1 : 0);
+            List<Evicted> evicted;
+            synchronized (segment) {
+                evicted = segment.trimToSize(segmentMaxSize);
+            }
+            notifyRemoved(evicted);
+        }
+    }
+
+    /**
+     * Evicts every entry.
+     */
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * @return the size of every cached entry, in the units of {@link #sizeOf}
+     */
+    public final int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public final int maxSize() {
+        int maxSize = 0;
+        for (Segment segment : segments) {
+            maxSize += segment.maxSize;
+        }
+        return maxSize;
+    }
+
+    /**
+     * @return the size of an entry. 1 by default, so our size is a number of entries.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Called (without any of our locks held) when an entry leaves the cache.
+     * @param evicted true if the entry was evicted to make room, false if it was removed or
+     *                replaced
+     * @param newValue the replacing value, or null
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    private V put(K key, V value, boolean replace) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+        Segment segment = segmentFor(key);
+        V previous;
+        List<Evicted> evicted;
+        synchronized (segment) {
+            previous = segment.map.get(key);
+            if (previous != null && !replace) {
+                return previous;
+            }
+            evicted = segment.put(key, value, false);
+        }
+        if (previous != null) {
+            entryRemoved(false, key, previous, value);
+        }
+        notifyRemoved(evicted);
+        return previous;
+    }
+
+    private Segment segmentFor(Object key) {
+        // Spread the hash bits, as HashMap does, so nearby hashes don't share a segment.
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments.get(hash & segmentMask);
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int size = sizeOf(key, value);
+        if (size < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return size;
+    }
+
+    private void notifyRemoved(List<Evicted> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        for (Evicted entry : evicted) {
+            entryRemoved(entry.replaced == null, entry.key, entry.value, entry.replaced);
+        }
+    }
+
+    /**
+     * A share of our entries, guarded by its own monitor.
+     */
+    private final class Segment {
+        /** Access ordered, so our eldest entry is the least recently used. */
+        final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+        /** Loads in progress, keyed by the key being loaded. */
+        final Map<K, Load> loads = new HashMap<>();
+        final int maxSize;
+        int size = 0;
+
+        Segment(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Adds an entry and evicts down to our maximum size. Call holding our lock.
+         * @param reportReplaced whether a replaced value is added to the returned entries,
+         *                       rather than reported by our caller
+         * @return the entries removed, to be reported once our lock is released
+         */
+        List<Evicted> put(K key, V value, boolean reportReplaced) {
+            size += safeSizeOf(key, value);
+            V previous = map.put(key, value);
+            List<Evicted> removed = null;
+            if (previous != null) {
+                size -= safeSizeOf(key, previous);
+                if (reportReplaced) {
+                    removed = new ArrayList<>();
+                    removed.add(new Evicted(key, previous, value));
+                }
+            }
+            List<Evicted> evicted = trimToSize(maxSize);
+            if (removed == null) {
+                return evicted;
+            }
+            if (evicted != null) {
+                removed.addAll(evicted);
+            }
+            return removed;
+        }
+
+        /**
+         * Evicts our least recently used entries. Call holding our lock.
+         * @return the entries evicted, or null if there were none
+         */
+        List<Evicted> trimToSize(int maxSize) {
+            List<Evicted> evicted = null;
+            Iterator<Map.Entry<K, V>> eldestFirst = map.entrySet().iterator();
+            while (size > maxSize && eldestFirst.hasNext()) {
+                Map.Entry<K, V> eldest = eldestFirst.next();
+                eldestFirst.remove();
+                size -= safeSizeOf(eldest.getKey(), eldest.getValue());
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(new Evicted(eldest.getKey(), eldest.getValue(), null));
+            }
+            return evicted;
+        }
+    }
+
+    /**
+     * An entry which left a segment, reported once its lock is released.
+     */
+    private final class Evicted {
+        final K key;
+        final V value;
+        /** The value it was replaced with, or null if it was evicted. */
+        final V replaced;
+
+        Evicted(K key, V value, V replaced) {
+            this.key = key;
+            this.value = value;
+            this.replaced = replaced;
+        }
+    }
+
+    /**
+     * A load in progress, which other callers asking for the same key wait on.
+     */
+    private final class Load {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private V value;
+        private Throwable failure;
+
+        void complete(V value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+            // Publishes our fields to the waiting threads.
+            done.countDown();
+        }
+
+        V await(K key) throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + key);
+            }
+            if (failure != null) {
+                throw new IOException("Loading " + key + " failed.", failure);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown by a fetch which was stopped through its {@link CancellationToken}.
+ */
+public class FeedCanceledException extends InterruptedIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FeedCanceledException() {
+        super("Feed request canceled.");
+    }
+}
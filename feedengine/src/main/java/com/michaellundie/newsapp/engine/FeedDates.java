@@ -0,0 +1,100 @@
+package com.michaellundie.newsapp.engine;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Converts between the ISO 8601 UTC dates used by the Guardian API (e.g. 2018-05-20T10:15:00Z)
+ * and epoch milliseconds, which is how {@link NewsItem} stores them.
+ */
+public final class FeedDates {
+
+    /** Stored when an article has no (readable) publication date. */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final String ISO_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+    private static final int ISO_LENGTH = 20;
+
+    private static final ThreadLocal<DateFormat> ISO_FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            DateFormat format = new SimpleDateFormat(ISO_PATTERN, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return format;
+        }
+    };
+
+    private FeedDates() {
+    }
+
+    /**
+     * Parses an API date. This runs for every article we parse, so rather than going through
+     * SimpleDateFormat we read the fixed width fields directly.
+     * @param isoDate a date formatted as yyyy-MM-dd'T'HH:mm:ss'Z'
+     * @return the date in epoch milliseconds, or {@link #UNKNOWN} if it couldn't be read
+     */
+    public static long parseIso(String isoDate) {
+        if (isoDate == null || isoDate.length() != ISO_LENGTH
+                || isoDate.charAt(4) != '-' || isoDate.charAt(7) != '-'
+                || isoDate.charAt(10) != 'T' || isoDate.charAt(13) != ':'
+                || isoDate.charAt(16) != ':' || isoDate.charAt(19) != 'Z') {
+            return UNKNOWN;
+        }
+        int year = digits(isoDate, 0, 4);
+        int month = digits(isoDate, 5, 7);
+        int day = digits(isoDate, 8, 10);
+        int hour = digits(isoDate, 11, 13);
+        int minute = digits(isoDate, 14, 16);
+        int second = digits(isoDate, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+        long seconds = daysFromCivil(year, month, day) * 86400L
+                + hour * 3600L + minute * 60L + second;
+        return seconds * 1000L;
+    }
+
+    /**
+     * @param epochMillis a date in epoch milliseconds
+     * @return the date formatted as yyyy-MM-dd'T'HH:mm:ss'Z', or null if it is {@link #UNKNOWN}
+     */
+    public static String formatIso(long epochMillis) {
+        if (epochMillis == UNKNOWN) {
+            return null;
+        }
+        return ISO_FORMAT.get().format(new Date(epochMillis));
+    }
+
+    /**
+     * @return the decimal number in the given range of our string, or -1 if it isn't one
+     */
+    private static int digits(String value, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     * Algorithm from http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
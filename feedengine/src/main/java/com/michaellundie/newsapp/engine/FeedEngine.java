@@ -0,0 +1,22 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Fetches and parses a page of news results. This is the only entry point the app needs into
+ * our feed engine.
+ */
+public interface FeedEngine {
+
+    /**
+     * Fetches the results of a search request. Blocks, so must not be called on a UI thread.
+     * @param request the search request
+     * @param cancellation stops the fetch when its results are no longer wanted. May be null.
+     * @return the parsed results, in the order returned by the API
+     * @throws IOException if the request failed or returned an error response
+     * @throws FeedCanceledException if the fetch was cancelled
+     */
+    ArrayList<NewsItem> fetch(FeedRequest request, CancellationToken cancellation)
+            throws IOException;
+}
@@ -0,0 +1,226 @@
+package com.michaellundie.newsapp.engine;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming parser for Guardian search responses. Builds each {@link NewsItem} in a single pass
+ * as soon as its JSON object has been read; no intermediate String or JSON tree is created.
+ */
+public final class FeedParser {
+
+    private static final Logger LOGGER = Logger.getLogger(FeedParser.class.getName());
+    /** Includes any wait for the network, as we parse while the response streams in. */
+    private static final Metrics.Histogram ARTICLE_PARSE_TIME =
+            Metrics.histogram("feed.parse.perArticle", "us");
+
+    /**
+     * Create a private constructor because no one should ever create a {@link FeedParser} object.
+     */
+    private FeedParser() {
+    }
+
+    /**
+     * Return a list of {@link NewsItem} objects, built while streaming through the JSON response.
+     * If the JSON is malformed or not structured as we expect, the articles parsed up to that
+     * point are returned.
+     * @param inputStream the response body of our API request. Closed by this method.
+     * @return parsed results, or null if there was no stream to read
+     */
+    public static ArrayList<NewsItem> parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, null);
+    }
+
+    /**
+     * As {@link #parse(InputStream)}, checking for cancellation before each article.
+     * @param inputStream the response body of our API request. Closed by this method.
+     * @param cancellation stops the parse. May be null.
+     * @return parsed results, or null if there was no stream to read
+     * @throws FeedCanceledException if the parse was cancelled
+     */
+    public static ArrayList<NewsItem> parse(InputStream inputStream,
+                                            CancellationToken cancellation) throws IOException {
+
+        // If there is no stream, then return early.
+        if (inputStream == null) {
+            return null;
+        }
+
+        // Create an empty List that we can start adding news articles to
+        ArrayList<NewsItem> newsQueryResults = new ArrayList<>();
+
+        JsonReader reader = new JsonReader(
+                new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8"))));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                // The only object we are interested in at the root level is 'response'
+                if (reader.nextName().equals("response")) {
+                    readResponse(reader, newsQueryResults, cancellation);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (FeedCanceledException e) {
+            // Nobody wants our partial results.
+            throw e;
+        } catch (IOException | IllegalStateException e) {
+            // Keep any articles we managed to parse, so the app doesn't crash.
+            LOGGER.log(Level.WARNING, "Problem parsing the JSON results.", e);
+        } finally {
+            reader.close();
+        }
+
+        // Return the list of news articles
+        return newsQueryResults;
+    }
+
+    /**
+     * Reads the 'response' object, handing each entry of the 'results' array to
+     * {@link #readArticle(JsonReader, int)}.
+     */
+    private static void readResponse(JsonReader reader, ArrayList<NewsItem> newsQueryResults,
+                                     CancellationToken cancellation) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("results")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (cancellation != null) {
+                        cancellation.throwIfCanceled();
+                    }
+                    long start = Metrics.startTimer();
+                    newsQueryResults.add(readArticle(reader, newsQueryResults.size()));
+                    ARTICLE_PARSE_TIME.recordMicrosSince(start);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a single article object from the 'results' array.
+     * @param articleNumber the position of this article within our results
+     */
+    private static NewsItem readArticle(JsonReader reader, int articleNumber) throws IOException {
+        String id = "";
+        String section = "";
+        String title = "";
+        long publishedMillis = FeedDates.UNKNOWN;
+        String articleURL = "";
+        String thumbnailURL = "";
+        String[] authors = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextStringOrEmpty(reader);
+                    break;
+                case "sectionName":
+                    section = nextStringOrEmpty(reader);
+                    break;
+                case "webTitle":
+                    title = nextStringOrEmpty(reader);
+                    break;
+                case "webPublicationDate":
+                    // Parsed once here, rather than every time the date is shown.
+                    publishedMillis = FeedDates.parseIso(nextStringOrEmpty(reader));
+                    break;
+                case "webUrl":
+                    articleURL = nextStringOrEmpty(reader);
+                    break;
+                case "fields":
+                    // Getting thumbnail URL from guardian API JSON object 'fields'
+                    thumbnailURL = readThumbnail(reader);
+                    break;
+                case "tags":
+                    // Getting authors from guardian API JSON array 'tags'
+                    authors = readAuthors(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new NewsItem(id, title, authors, section, publishedMillis, thumbnailURL,
+                articleURL, articleNumber);
+    }
+
+    /**
+     * Reads the 'fields' object of an article and returns the thumbnail URL (if any).
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnailURL = "";
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return thumbnailURL;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnail")) {
+                thumbnailURL = nextStringOrEmpty(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnailURL;
+    }
+
+    /**
+     * Reads the 'tags' array of an article, returning the name of each contributor.
+     */
+    private static String[] readAuthors(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        // Almost every article has fewer than four contributors.
+        String[] authors = new String[4];
+        int authorCount = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("webTitle")) {
+                    if (authorCount == authors.length) {
+                        authors = Arrays.copyOf(authors, authorCount * 2);
+                    }
+                    authors[authorCount++] = nextStringOrEmpty(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return authorCount == authors.length ? authors : Arrays.copyOf(authors, authorCount);
+    }
+
+    /**
+     * Equivalent of JSONObject.optString(), returning an empty string for JSON null values.
+     */
+    private static String nextStringOrEmpty(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return "";
+        }
+        return reader.nextString();
+    }
+}
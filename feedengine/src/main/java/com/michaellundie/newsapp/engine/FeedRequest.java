@@ -0,0 +1,159 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * An immutable Guardian content API search request. Use {@link Builder} to create one, and
+ * {@link #withPage(int)} / {@link #withFromDate(String)} to derive follow up requests.
+ */
+public final class FeedRequest {
+
+    public static final String ORDER_BY_NEWEST = "newest";
+    public static final String ORDER_BY_RELEVANCE = "relevance";
+
+    private static final String API_SCHEME = "https";
+    private static final String API_SEARCH_PATH = "search";
+    private static final String API_QUERY_PARAM = "q";
+    private static final String API_ORDERBY_PARAM = "order-by";
+    private static final String API_SHOWTAGS_PARAM = "show-tags";
+    private static final String API_CONTRIBUTOR_VALUE = "contributor";
+    private static final String API_SHOWFIELDS_PARAM = "show-fields";
+    private static final String API_THUMBNAIL_VALUE = "thumbnail";
+    private static final String API_RESULTS_PARAM = "page-size";
+    private static final String API_PAGE_PARAM = "page";
+    private static final String API_FROMDATE_PARAM = "from-date";
+    private static final String API_KEY_PARAM = "api-key";
+
+    private final String authority;
+    private final String apiKey;
+    private final String query;
+    private final String orderBy;
+    private final int pageSize;
+    private final int page;
+    private final String fromDate;
+
+    private FeedRequest(String authority, String apiKey, String query, String orderBy,
+                        int pageSize, int page, String fromDate) {
+        this.authority = authority;
+        this.apiKey = apiKey;
+        this.query = query;
+        this.orderBy = orderBy;
+        this.pageSize = pageSize;
+        this.page = page;
+        this.fromDate = fromDate;
+    }
+
+    /**
+     * @param page the page number, starting at 1
+     * @return a copy of this request for the given page of results
+     */
+    public FeedRequest withPage(int page) {
+        return new FeedRequest(authority, apiKey, query, orderBy, pageSize, page, fromDate);
+    }
+
+    /**
+     * @param fromDate an ISO 8601 date, as returned in webPublicationDate
+     * @return a copy of this request, restricted to articles published on or after the date
+     */
+    public FeedRequest withFromDate(String fromDate) {
+        return new FeedRequest(authority, apiKey, query, orderBy, pageSize, page, fromDate);
+    }
+
+    public String getQuery() { return query; }
+
+    public String getOrderBy() { return orderBy; }
+
+    public int getPageSize() { return pageSize; }
+
+    public int getPage() { return page; }
+
+    public String getFromDate() { return fromDate; }
+
+    /**
+     * @return true if results are ordered by publication date, newest first
+     */
+    public boolean isNewestFirst() {
+        return ORDER_BY_NEWEST.equals(orderBy);
+    }
+
+    /**
+     * Builds the request URL. Parameters are always written in the same order, so the same
+     * request always produces the same URL.
+     * @return url string
+     */
+    public String toUrl() {
+        StringBuilder url = new StringBuilder(256);
+        url.append(API_SCHEME).append("://").append(authority).append('/').append(API_SEARCH_PATH);
+        appendParameter(url, API_QUERY_PARAM, query);
+        appendParameter(url, API_ORDERBY_PARAM, orderBy);
+        appendParameter(url, API_SHOWTAGS_PARAM, API_CONTRIBUTOR_VALUE);
+        appendParameter(url, API_SHOWFIELDS_PARAM, API_THUMBNAIL_VALUE);
+        appendParameter(url, API_RESULTS_PARAM, String.valueOf(pageSize));
+        if (page > 1) {
+            appendParameter(url, API_PAGE_PARAM, String.valueOf(page));
+        }
+        if (fromDate != null) {
+            appendParameter(url, API_FROMDATE_PARAM, fromDate);
+        }
+        appendParameter(url, API_KEY_PARAM, apiKey);
+        return url.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toUrl();
+    }
+
+    private static void appendParameter(StringBuilder url, String name, String value) {
+        url.append(url.indexOf("?") < 0 ? '?' : '&').append(name).append('=').append(encode(value));
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value == null ? "" : value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported.
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Builder for our search requests.
+     */
+    public static final class Builder {
+        private final String authority;
+        private final String apiKey;
+        private String query = "technology";
+        private String orderBy = ORDER_BY_NEWEST;
+        private int pageSize = 16;
+
+        /**
+         * @param authority the API host, e.g. content.guardianapis.com
+         * @param apiKey our API key
+         */
+        public Builder(String authority, String apiKey) {
+            this.authority = authority;
+            this.apiKey = apiKey;
+        }
+
+        public Builder query(String query) {
+            this.query = query;
+            return this;
+        }
+
+        public Builder orderBy(String orderBy) {
+            this.orderBy = orderBy;
+            return this;
+        }
+
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public FeedRequest build() {
+            return new FeedRequest(authority, apiKey, query, orderBy, pageSize, 1, null);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the last response body received for each feed URL, along with its ETag and
+ * Last-Modified validators. {@link HttpFeedEngine} sends these back to the server, and when the
+ * server answers 304 Not Modified the feed is served from here instead.
+ * The most recently parsed results are also kept in memory, so a 304 doesn't need a re-parse.
+ */
+public class FeedResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(FeedResponseCache.class.getName());
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int MAX_DISK_ENTRIES = 8;
+    private static final int MAX_PARSED_ENTRIES = 4;
+
+    private final File mDirectory;
+    private final LinkedHashMap<String, ArrayList<NewsItem>> mParsedResults =
+            new LinkedHashMap<String, ArrayList<NewsItem>>(MAX_PARSED_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ArrayList<NewsItem>> eldest) {
+                    return size() > MAX_PARSED_ENTRIES;
+                }
+            };
+
+    /**
+     * The cache validators returned by the server with a feed response.
+     */
+    public static class Validators {
+        public final String eTag;
+        public final String lastModified;
+
+        Validators(String eTag, String lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * @param directory the directory our responses are stored in. Created if it doesn't exist.
+     */
+    public FeedResponseCache(File directory) {
+        mDirectory = directory;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            LOGGER.warning("Unable to create feed cache directory.");
+        }
+    }
+
+    /**
+     * @param url the feed request URL
+     * @return the validators stored with our cached response, or null if we have no response.
+     */
+    public synchronized Validators getValidators(String url) {
+        String key = CacheKeys.keyFor(url);
+        File metaFile = new File(mDirectory, key + META_SUFFIX);
+        if (!metaFile.exists() || !new File(mDirectory, key + BODY_SUFFIX).exists()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(metaFile), Charset.forName("UTF-8")));
+            String eTag = emptyToNull(reader.readLine());
+            String lastModified = emptyToNull(reader.readLine());
+            if (eTag == null && lastModified == null) {
+                return null;
+            }
+            return new Validators(eTag, lastModified);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read cached feed validators.", e);
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Opens the cached response body for a feed. Caller must close the stream.
+     */
+    public InputStream openBody(String url) throws IOException {
+        return new FileInputStream(new File(mDirectory, CacheKeys.keyFor(url) + BODY_SUFFIX));
+    }
+
+    /**
+     * @return a new temporary file to write a response body to, before calling
+     * {@link #commit(String, File, String, String)}. Unique to each call, so fetches of the
+     * same feed which overlap never write into each other's body.
+     */
+    public File newBodyFile(String url) throws IOException {
+        return File.createTempFile(CacheKeys.keyFor(url), TEMP_FILE_SUFFIX, mDirectory);
+    }
+
+    /**
+     * Replaces the cached response for a feed. If the server gave us no validators, there is
+     * nothing to revalidate with, so the response is discarded instead.
+     * @param bodyFile a file returned by {@link #newBodyFile(String)}, holding the complete body
+     */
+    public synchronized void commit(String url, File bodyFile, String eTag, String lastModified) {
+        String key = CacheKeys.keyFor(url);
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+        File meta = new File(mDirectory, key + META_SUFFIX);
+        if (eTag == null && lastModified == null) {
+            deleteFile(bodyFile);
+            return;
+        }
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(meta), Charset.forName("UTF-8"));
+            writer.write((eTag == null ? "" : eTag) + "\n");
+            writer.write((lastModified == null ? "" : lastModified) + "\n");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write cached feed validators.", e);
+            deleteFile(bodyFile);
+            deleteFile(meta);
+            return;
+        } finally {
+            closeQuietly(writer);
+        }
+        if (!bodyFile.renameTo(body)) {
+            LOGGER.warning("Unable to commit feed response to cache.");
+            deleteFile(bodyFile);
+            deleteFile(meta);
+            return;
+        }
+        trimToSize();
+    }
+
+    /**
+     * @return a copy of the results we last parsed for this feed, or null if we have none.
+     */
+    public synchronized ArrayList<NewsItem> getParsed(String url) {
+        ArrayList<NewsItem> results = mParsedResults.get(url);
+        return results == null ? null : new ArrayList<>(results);
+    }
+
+    public synchronized void putParsed(String url, ArrayList<NewsItem> results) {
+        mParsedResults.put(url, new ArrayList<>(results));
+    }
+
+    /**
+     * Keeps only our most recently written responses on disk.
+     */
+    private void trimToSize() {
+        File[] bodies = mDirectory.listFiles();
+        if (bodies == null) {
+            return;
+        }
+        ArrayList<File> bodyFiles = new ArrayList<>();
+        for (File file : bodies) {
+            if (file.getName().endsWith(BODY_SUFFIX)) {
+                bodyFiles.add(file);
+            }
+        }
+        if (bodyFiles.size() <= MAX_DISK_ENTRIES) {
+            return;
+        }
+        File[] sorted = bodyFiles.toArray(new File[bodyFiles.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < sorted.length - MAX_DISK_ENTRIES; i++) {
+            String name = sorted[i].getName();
+            String key = name.substring(0, name.length() - BODY_SUFFIX.length());
+            deleteFile(sorted[i]);
+            deleteFile(new File(mDirectory, key + META_SUFFIX));
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warning("Unable to delete cache file " + file.getName());
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing more we can do.
+            }
+        }
+    }
+}
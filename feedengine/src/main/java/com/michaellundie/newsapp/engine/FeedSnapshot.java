@@ -0,0 +1,146 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A list of results stored in a compact binary file (see {@link NewsListCodec}). We keep the
+ * last successfully loaded results of each feed this way, so reading them back on a cold start
+ * lets us show content straight away while the feed is revalidated over the network. The app's
+ * saved instance state refers to the same file, keeping only its path in the saved Bundle.
+ * Results are loaded a page at a time, so we also store how many pages they hold:
+ * <pre>
+ * int magic, int pageCount, encoded list
+ * </pre>
+ */
+public class FeedSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(FeedSnapshot.class.getName());
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    /** "FSNP". Identifies our snapshots. */
+    private static final int MAGIC = 0x46534e50;
+
+    /**
+     * The results stored in a snapshot, and the number of pages they were loaded from.
+     */
+    public static class Contents {
+        public final ArrayList<NewsItem> items;
+        public final int pageCount;
+
+        Contents(ArrayList<NewsItem> items, int pageCount) {
+            this.items = items;
+            this.pageCount = pageCount;
+        }
+    }
+
+    private final File file;
+
+    /**
+     * @param file the file this snapshot is stored in. Its directory is created when needed.
+     */
+    public FeedSnapshot(File file) {
+        this.file = file;
+    }
+
+    public File getFile() { return file; }
+
+    /**
+     * @return the stored results, or null if there is no (readable) snapshot
+     */
+    public ArrayList<NewsItem> read() {
+        Contents contents = readContents();
+        return contents != null ? contents.items : null;
+    }
+
+    /**
+     * Reads the stored results through a memory mapping of the file, so the data is never
+     * copied into an intermediate buffer.
+     * @return the stored results and their page count, or null if there is no (readable)
+     * snapshot
+     */
+    public synchronized Contents readContents() {
+        if (!file.exists()) {
+            return null;
+        }
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a feed snapshot.");
+            }
+            int pageCount = buffer.getInt();
+            return new Contents(NewsListCodec.decode(buffer), Math.max(1, pageCount));
+        } catch (IOException e) {
+            // Not ours, or written by a different version of the app.
+            LOGGER.log(Level.WARNING, "Unable to read feed snapshot.", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Replaces the stored results with a single page.
+     * @param items the results to store
+     */
+    public void write(List<NewsItem> items) {
+        write(items, 1);
+    }
+
+    /**
+     * Replaces the stored results. The new snapshot is written to a temporary file first, so a
+     * failed write never leaves a half written snapshot behind.
+     * @param items the results to store
+     * @param pageCount the number of pages the results were loaded from
+     */
+    public synchronized void write(List<NewsItem> items, int pageCount) {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            LOGGER.warning("Unable to create feed snapshot directory.");
+            return;
+        }
+        File tempFile = new File(file.getPath() + TEMP_FILE_SUFFIX);
+        FileOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new FileOutputStream(tempFile);
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(pageCount);
+            header.flush();
+            out.write(NewsListCodec.encode(items));
+            out.close();
+            out = null;
+            written = tempFile.renameTo(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write feed snapshot.", e);
+        } finally {
+            closeQuietly(out);
+            if (!written && tempFile.exists() && !tempFile.delete()) {
+                LOGGER.warning("Unable to delete incomplete feed snapshot.");
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing more we can do.
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link FeedEngine} fetching results over HTTP, through a {@link Transport}. Responses are
+ * parsed straight from the response stream, so we never hold a copy of the whole payload in
+ * memory. If a {@link FeedResponseCache} is given, requests are made conditional on the
+ * validators of our cached response, and a 304 Not Modified response is served from the cache.
+ */
+public class HttpFeedEngine implements FeedEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpFeedEngine.class.getName());
+
+    private final Transport transport;
+    private final FeedResponseCache responseCache;
+
+    /**
+     * @param transport the transport our requests are made with
+     * @param responseCache cache used to revalidate and store responses. May be null.
+     */
+    public HttpFeedEngine(Transport transport, FeedResponseCache responseCache) {
+        this.transport = transport;
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public ArrayList<NewsItem> fetch(FeedRequest request, CancellationToken cancellation)
+            throws IOException {
+        return fetch(request.toUrl(), cancellation);
+    }
+
+    /**
+     * Make an HTTP request to the given URL and return the parsed list of {@link NewsItem}s.
+     * @param urlString the request URL
+     * @param cancellation stops the request and parse. May be null.
+     */
+    ArrayList<NewsItem> fetch(String urlString, CancellationToken cancellation)
+            throws IOException {
+        ArrayList<NewsItem> newsQueryResults;
+
+        FeedResponseCache.Validators validators = null;
+        Map<String, String> headers = new HashMap<>();
+        if (responseCache != null) {
+            validators = responseCache.getValidators(urlString);
+        }
+        if (validators != null) {
+            // Ask the server to only send the feed if it has changed.
+            if (validators.eTag != null) {
+                headers.put("If-None-Match", validators.eTag);
+            }
+            if (validators.lastModified != null) {
+                headers.put("If-Modified-Since", validators.lastModified);
+            }
+        }
+
+        TransportResponse response = transport.get(urlString, headers, cancellation);
+        InputStream cachedBody = null;
+        try {
+            int responseCode = response.getStatusCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null) {
+                // Nothing has changed. Use the results we parsed last time if we still have
+                // them, otherwise parse our cached copy of the body.
+                newsQueryResults = responseCache.getParsed(urlString);
+                if (newsQueryResults == null) {
+                    cachedBody = responseCache.openBody(urlString);
+                    newsQueryResults = FeedParser.parse(cachedBody, cancellation);
+                    responseCache.putParsed(urlString, newsQueryResults);
+                }
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                // If the request was successful (response code 200),
+                // then read the input stream and parse the response.
+                if (responseCache != null) {
+                    newsQueryResults = parseAndCache(urlString, response.body(),
+                            response.getHeader("ETag"), response.getHeader("Last-Modified"),
+                            cancellation);
+                } else {
+                    newsQueryResults = FeedParser.parse(response.body(), cancellation);
+                }
+            } else {
+                throw new IOException("Error response code: " + responseCode);
+            }
+            if (cancellation != null) {
+                // Our parser keeps what it has when a read fails, e.g. because a cancel closed
+                // our connection. Those results aren't wanted.
+                cancellation.throwIfCanceled();
+            }
+        } catch (IOException e) {
+            if (cancellation != null) {
+                cancellation.throwIfCanceled();
+            }
+            throw e;
+        } finally {
+            // Closing (rather than disconnecting) lets the transport reuse the connection.
+            response.close();
+            if (cachedBody != null) {
+                cachedBody.close();
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Fetched " + urlString + ": " + response.getStatusCode() + ", "
+                    + response.getBytesReceived() + " bytes in "
+                    + response.getElapsedMillis() + "ms");
+        }
+        return newsQueryResults;
+    }
+
+    /**
+     * Parses a response body while copying it to our response cache. The copy is only committed
+     * once the whole body has been received, so an interrupted download is never cached.
+     */
+    private ArrayList<NewsItem> parseAndCache(String urlString, InputStream inputStream,
+                                              String eTag, String lastModified,
+                                              CancellationToken cancellation)
+            throws IOException {
+        File bodyFile = responseCache.newBodyFile(urlString);
+        OutputStream bodyCopy = new BufferedOutputStream(new FileOutputStream(bodyFile));
+        ArrayList<NewsItem> newsQueryResults;
+        boolean complete = false;
+        try {
+            InputStream teeStream = new TeeInputStream(inputStream, bodyCopy);
+            newsQueryResults = FeedParser.parse(teeStream, cancellation);
+            // Read anything the parser left behind. This throws if the connection was dropped.
+            byte[] buffer = new byte[1024];
+            while (teeStream.read(buffer) != -1) {
+                // Keep draining
+            }
+            if (cancellation != null) {
+                cancellation.throwIfCanceled();
+            }
+            complete = true;
+        } finally {
+            bodyCopy.close();
+            if (!complete && !bodyFile.delete()) {
+                LOGGER.warning("Unable to delete incomplete feed response.");
+            }
+        }
+        responseCache.commit(urlString, bodyFile, eTag, lastModified);
+        responseCache.putParsed(urlString, newsQueryResults);
+        return newsQueryResults;
+    }
+
+    /**
+     * An input stream which writes a copy of everything read through it to an output stream.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                copy.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The underlying stream is closed by its owner, once we have finished draining it.
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lightweight registry of counters and histograms recorded on our hot paths (requests,
+ * parsing, image decoding, caches and binding), which can be dumped as text.
+ * Call sites look their metrics up once, and keep them in a static field. Recording is off by
+ * default; while it is off, recording costs a single volatile read and no clock is read.
+ *
+ * Counters named {@code <name>.hits} and {@code <name>.misses} are also dumped as a hit ratio.
+ */
+public final class Metrics {
+
+    private static final String HITS_SUFFIX = ".hits";
+    private static final String MISSES_SUFFIX = ".misses";
+
+    private static volatile boolean enabled = false;
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Values recorded so far are kept.
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @param name the counter name, e.g. "image.memoryCache.hits"
+     * @return the counter with the given name, created if needed
+     */
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @param name the histogram name, e.g. "image.decode"
+     * @param unit the unit of recorded values, e.g. "us". Only used when dumping.
+     * @return the histogram with the given name, created if needed
+     */
+    public static Histogram histogram(String name, String unit) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram(unit);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Starts timing an operation, for {@link Histogram#recordMicrosSince(long)}.
+     * @return the current {@link System#nanoTime()}, or 0 if we aren't recording
+     */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.value.set(0);
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return every metric as text, one per line, sorted by name
+     */
+    public static String dump() {
+        StringWriter text = new StringWriter();
+        dump(new PrintWriter(text), "");
+        return text.toString();
+    }
+
+    /**
+     * Writes every metric as text, one per line, sorted by name.
+     * @param writer where to write
+     * @param prefix written at the start of every line, e.g. for indentation in dumpsys
+     */
+    public static void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("Metrics (" + (enabled ? "recording" : "not recording") + ")");
+        Map<String, Counter> sortedCounters = new TreeMap<>(counters);
+        writer.print(prefix);
+        writer.println("Counters:");
+        for (Map.Entry<String, Counter> entry : sortedCounters.entrySet()) {
+            writer.print(prefix);
+            writer.println("  " + entry.getKey() + ": " + entry.getValue().get());
+        }
+        writer.print(prefix);
+        writer.println("Hit ratios:");
+        for (Map.Entry<String, Counter> entry : sortedCounters.entrySet()) {
+            if (!entry.getKey().endsWith(HITS_SUFFIX)) {
+                continue;
+            }
+            String name = entry.getKey().substring(0,
+                    entry.getKey().length() - HITS_SUFFIX.length());
+            Counter misses = sortedCounters.get(name + MISSES_SUFFIX);
+            long hits = entry.getValue().get();
+            long total = hits + (misses != null ? misses.get() : 0);
+            writer.print(prefix);
+            writer.println(String.format(Locale.US, "  %s: %.1f%% (%d of %d)", name,
+                    total > 0 ? 100.0 * hits / total : 0.0, hits, total));
+        }
+        writer.print(prefix);
+        writer.println("Histograms:");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            writer.print(prefix);
+            writer.println("  " + entry.getKey() + " " + entry.getValue());
+        }
+        writer.flush();
+    }
+
+    /**
+     * A running total.
+     */
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            if (enabled) {
+                value.incrementAndGet();
+            }
+        }
+
+        public void add(long amount) {
+            if (enabled) {
+                value.addAndGet(amount);
+            }
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Records the distribution of a value in power of two buckets, so recording never
+     * allocates and percentiles are accurate to within a factor of two.
+     */
+    public static final class Histogram {
+        /** Bucket i holds values below 2^i, and at or above 2^(i-1). Bucket 0 holds zeros. */
+        private static final int BUCKET_COUNT = 64;
+
+        private final String unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram(String unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * @param value the value to record. Negative values are recorded as 0.
+         */
+        public void record(long value) {
+            if (!enabled) {
+                return;
+            }
+            value = Math.max(0, value);
+            buckets.incrementAndGet(Math.min(BUCKET_COUNT - 1,
+                    64 - Long.numberOfLeadingZeros(value)));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long currentMax;
+            while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+                // Another thread raised the max. Check again.
+            }
+        }
+
+        /**
+         * Records the microseconds since a timer was started.
+         * @param startNanos returned by {@link Metrics#startTimer()}
+         */
+        public void recordMicrosSince(long startNanos) {
+            if (enabled && startNanos != 0) {
+                record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param fraction the percentile as a fraction, e.g. 0.9
+         * @return an upper bound of the percentile: the top of the bucket it falls in
+         */
+        public long getPercentileUpperBound(double fraction) {
+            long total = count.get();
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return i == 0 ? 0 : Math.min(max.get(), (1L << i) - 1);
+                }
+            }
+            return max.get();
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        @Override
+        public String toString() {
+            long total = count.get();
+            return String.format(Locale.US,
+                    "(%s): count=%d mean=%.1f p50<=%d p90<=%d p99<=%d max=%d", unit, total,
+                    total > 0 ? (double) sum.get() / total : 0.0,
+                    getPercentileUpperBound(0.5), getPercentileUpperBound(0.9),
+                    getPercentileUpperBound(0.99), max.get());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fetches several feeds at once (e.g. one per configured topic) and merges them into one.
+ * Requests run in parallel on a bounded executor, so a refresh takes about as long as its
+ * slowest request, rather than the sum of all of them.
+ */
+public class MultiFeedFetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(MultiFeedFetcher.class.getName());
+
+    private final FeedEngine engine;
+    private final ExecutorService executor;
+
+    /**
+     * @param engine the engine each request is fetched with. Must be thread safe.
+     * @param executor runs our requests. Its thread count bounds how many run at once.
+     */
+    public MultiFeedFetcher(FeedEngine engine, ExecutorService executor) {
+        this.engine = engine;
+        this.executor = executor;
+    }
+
+    /**
+     * Fetches every request in parallel and waits for all of them. A failed request doesn't
+     * lose the results of the others: it is logged, and its result is null.
+     * @param requests the requests to fetch
+     * @param cancellation stops every request. May be null.
+     * @return the results of each request, in request order. Null for a request that failed.
+     * @throws IOException if every request failed
+     * @throws FeedCanceledException if we were cancelled
+     */
+    public List<ArrayList<NewsItem>> fetchAll(List<FeedRequest> requests,
+                                              final CancellationToken cancellation)
+            throws IOException {
+        if (requests.size() == 1) {
+            // Nothing to run alongside. Save ourselves the hand over to another thread.
+            return Collections.singletonList(engine.fetch(requests.get(0), cancellation));
+        }
+        List<Future<ArrayList<NewsItem>>> futures = new ArrayList<>(requests.size());
+        for (final FeedRequest request : requests) {
+            futures.add(executor.submit(new Callable<ArrayList<NewsItem>>() {
+                @Override
+                public ArrayList<NewsItem> call() throws IOException {
+                    return engine.fetch(request, cancellation);
+                }
+            }));
+        }
+
+        List<ArrayList<NewsItem>> results = new ArrayList<>(requests.size());
+        IOException firstFailure = null;
+        int failures = 0;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof FeedCanceledException) {
+                        // Not a failure. We'll report the cancel once every request has stopped.
+                        results.add(null);
+                        continue;
+                    }
+                    IOException failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException("Feed request failed.", e.getCause());
+                    LOGGER.log(Level.WARNING,
+                            "Unable to fetch feed for " + requests.get(i).getQuery(), failure);
+                    if (firstFailure == null) {
+                        firstFailure = failure;
+                    }
+                    failures++;
+                    results.add(null);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Our caller gave up. Don't leave the remaining requests running for nothing.
+            for (Future<ArrayList<NewsItem>> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching feeds.");
+        }
+        if (cancellation != null) {
+            cancellation.throwIfCanceled();
+        }
+        if (failures > 0 && failures == requests.size()) {
+            throw firstFailure;
+        }
+        return results;
+    }
+
+    /**
+     * Merges feeds into one. Articles already merged from an earlier feed (an article can
+     * match more than one topic) are skipped.
+     * Newest first feeds are k-way merged by publication date, which keeps every feed's own
+     * order without sorting everything again. Other feeds (e.g. ordered by relevance) have no
+     * order in common, so they are interleaved, putting the top results of every feed first.
+     * @param feeds the feeds to merge. Null feeds (failed requests) are ignored.
+     * @param newestFirst true if every feed is ordered by publication date, newest first
+     * @return the merged feed
+     */
+    public static ArrayList<NewsItem> merge(List<? extends List<NewsItem>> feeds,
+                                            boolean newestFirst) {
+        int total = 0;
+        int longest = 0;
+        for (List<NewsItem> feed : feeds) {
+            if (feed != null) {
+                total += feed.size();
+                longest = Math.max(longest, feed.size());
+            }
+        }
+        ArrayList<NewsItem> merged = new ArrayList<>(total);
+        HashSet<String> mergedIds = new HashSet<>(total * 2);
+        if (newestFirst) {
+            PriorityQueue<FeedCursor> heads =
+                    new PriorityQueue<>(Math.max(1, feeds.size()), NEWEST_HEAD_FIRST);
+            for (int i = 0; i < feeds.size(); i++) {
+                List<NewsItem> feed = feeds.get(i);
+                if (feed != null && !feed.isEmpty()) {
+                    heads.add(new FeedCursor(feed, i));
+                }
+            }
+            while (!heads.isEmpty()) {
+                FeedCursor cursor = heads.poll();
+                addUnlessMerged(merged, mergedIds, cursor.head());
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+        } else {
+            for (int position = 0; position < longest; position++) {
+                for (List<NewsItem> feed : feeds) {
+                    if (feed != null && position < feed.size()) {
+                        addUnlessMerged(merged, mergedIds, feed.get(position));
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static void addUnlessMerged(ArrayList<NewsItem> merged, HashSet<String> mergedIds,
+                                        NewsItem item) {
+        // We can't tell articles without an id apart, so always keep them. Our parser gives
+        // them an empty id.
+        String id = item.getId();
+        if (id == null || id.isEmpty() || mergedIds.add(id)) {
+            merged.add(item);
+        }
+    }
+
+    /** Orders feed cursors by their next article, newest first. Ties go to the earlier feed. */
+    private static final Comparator<FeedCursor> NEWEST_HEAD_FIRST = new Comparator<FeedCursor>() {
+        @Override
+        public int compare(FeedCursor first, FeedCursor second) {
+            int byDate = Long.compare(second.head().getPublishedMillis(),
+                    first.head().getPublishedMillis());
+            return byDate != 0 ? byDate : first.feedIndex - second.feedIndex;
+        }
+    };
+
+    /**
+     * Our position within one of the feeds being merged.
+     */
+    private static final class FeedCursor {
+        private final List<NewsItem> feed;
+        private final int feedIndex;
+        private int position = 0;
+
+        FeedCursor(List<NewsItem> feed, int feedIndex) {
+            this.feed = feed;
+            this.feedIndex = feedIndex;
+        }
+
+        NewsItem head() {
+            return feed.get(position);
+        }
+
+        /**
+         * @return false once we have passed the last article of the feed
+         */
+        boolean advance() {
+            return ++position < feed.size();
+        }
+    }
+}
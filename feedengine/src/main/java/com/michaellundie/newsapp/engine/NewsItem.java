@@ -0,0 +1,95 @@
+package com.michaellundie.newsapp.engine;
+
+import java.util.Arrays;
+
+/*
+ * A simple class to store and handle News Result data.
+ * Kept lean, as we may hold a thousand of these: section and author names are pooled (they
+ * repeat across most articles), authors are a plain array and the publication date is parsed
+ * once, into epoch milliseconds.
+ */
+public class NewsItem {
+    private static final String[] NO_AUTHORS = new String[0];
+    /** Shared by every article. Sections and contributors are a small, slowly changing set. */
+    private static final StringPool NAME_POOL = new StringPool(2048);
+
+    private final String id;
+    private final String title;
+    private final String[] authors;
+    private final String section;
+    private final long publishedMillis;
+    private final String thumbnailURL;
+    private final String articleURL;
+    private final int itemID;
+
+    /**
+     * Default object constructor for this class.
+     * @param id The unique Guardian API id of this article.
+     * @param title The title of our news article. String.
+     * @param authors The article authors. The array is kept (not copied), so don't modify it.
+     * @param section The section name of the returned article.
+     * @param publishedMillis The published date of the returned article, in epoch milliseconds,
+     *                        or {@link FeedDates#UNKNOWN}.
+     * @param thumbnailURL The URL of any linked image.
+     * @param articleURL The URL of the web version of this news article.
+     * @param itemID The unique itemID for this item.
+     */
+    public NewsItem(String id, String title, String[] authors, String section,
+                    long publishedMillis, String thumbnailURL, String articleURL, int itemID) {
+        this.id = id;
+        this.title = title;
+        if (authors == null || authors.length == 0) {
+            this.authors = NO_AUTHORS;
+        } else {
+            for (int i = 0; i < authors.length; i++) {
+                authors[i] = NAME_POOL.get(authors[i]);
+            }
+            this.authors = authors;
+        }
+        this.section = NAME_POOL.get(section);
+        this.publishedMillis = publishedMillis;
+        this.thumbnailURL = thumbnailURL;
+        this.articleURL = articleURL;
+        this.itemID = itemID;
+    }
+
+    /**
+     * Checks whether another item would be displayed exactly like this one.
+     * @param other another article, usually the same article from a newer result set
+     * @return true if every displayed field matches
+     */
+    public boolean hasSameContent(NewsItem other) {
+        return publishedMillis == other.publishedMillis
+                && equal(title, other.title)
+                && equal(section, other.section)
+                && equal(thumbnailURL, other.thumbnailURL)
+                && equal(articleURL, other.articleURL)
+                && Arrays.equals(authors, other.authors);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public String getId() { return id; }
+
+    public String getTitle() { return title; }
+
+    /**
+     * @return the article authors, never null. Shared, so don't modify it.
+     */
+    public String[] getAuthors() { return authors; }
+
+    public String getSection() { return section; }
+
+    /**
+     * @return the publication date in epoch milliseconds, or {@link FeedDates#UNKNOWN}
+     */
+    public long getPublishedMillis() { return publishedMillis; }
+
+    public String getThumbnailURL() { return thumbnailURL; }
+
+    public String getArticleURL() { return articleURL; }
+
+    public int getItemID() { return itemID; }
+}
@@ -0,0 +1,239 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of a list of {@link NewsItem}s.
+ *
+ * Every distinct string is stored once, in a string table at the start of the data. Articles
+ * then refer to their strings by index, so sections and authors shared by many articles (and
+ * the many empty values) usually cost a single byte each. After a big endian int magic and
+ * version, every value is an unsigned LEB128 varint:
+ * <pre>
+ * int magic, int version,
+ * stringCount, stringCount * (byteLength, UTF-8 bytes),
+ * itemCount, itemCount * (id, title, section, published, thumbnailURL, articleURL,
+ *                         authorCount, authorCount * author, itemID)
+ * </pre>
+ * String references are the index into the string table plus one, or 0 for null.
+ * The publication date is a 64 bit varint: 0 if unknown, otherwise the zigzag encoded epoch
+ * milliseconds plus one.
+ * Data is decoded from a {@link ByteBuffer}, so it can be read straight out of a memory mapped
+ * file.
+ */
+public final class NewsListCodec {
+
+    /** "NLST". Identifies our encoded lists. */
+    private static final int MAGIC = 0x4e4c5354;
+    private static final int VERSION = 3;
+    private static final int NULL_REFERENCE = 0;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private NewsListCodec() {
+    }
+
+    /**
+     * @param items the articles to encode
+     * @return the encoded list
+     */
+    public static byte[] encode(List<NewsItem> items) {
+        // Build our string table first, so articles can refer to it.
+        Map<String, Integer> stringTable = new LinkedHashMap<>();
+        for (NewsItem item : items) {
+            addString(stringTable, item.getId());
+            addString(stringTable, item.getTitle());
+            addString(stringTable, item.getSection());
+            addString(stringTable, item.getThumbnailURL());
+            addString(stringTable, item.getArticleURL());
+            for (String author : item.getAuthors()) {
+                addString(stringTable, author);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * items.size() + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarint(out, stringTable.size());
+            for (String value : stringTable.keySet()) {
+                byte[] encoded = value.getBytes(UTF_8);
+                writeVarint(out, encoded.length);
+                out.write(encoded);
+            }
+            writeVarint(out, items.size());
+            for (NewsItem item : items) {
+                writeReference(out, stringTable, item.getId());
+                writeReference(out, stringTable, item.getTitle());
+                writeReference(out, stringTable, item.getSection());
+                writeDate(out, item.getPublishedMillis());
+                writeReference(out, stringTable, item.getThumbnailURL());
+                writeReference(out, stringTable, item.getArticleURL());
+                String[] authors = item.getAuthors();
+                writeVarint(out, authors.length);
+                for (String author : authors) {
+                    writeReference(out, stringTable, author);
+                }
+                writeVarint(out, item.getItemID());
+            }
+            out.flush();
+        } catch (IOException e) {
+            // We only write to memory.
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a list written by {@link #encode(List)}, starting at the buffer's position.
+     * Each distinct string is only decoded once, and shared by every article using it.
+     * @param buffer the encoded list. Its position is moved past the data read.
+     * @return the decoded articles
+     * @throws IOException if the data is not an encoded list of our current version
+     */
+    public static ArrayList<NewsItem> decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an encoded news list.");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported news list version " + version);
+            }
+            String[] stringTable = new String[readCount(buffer)];
+            byte[] scratch = new byte[0];
+            for (int i = 0; i < stringTable.length; i++) {
+                int length = readCount(buffer);
+                if (buffer.hasArray()) {
+                    // Decode straight from the backing array.
+                    int offset = buffer.arrayOffset() + buffer.position();
+                    stringTable[i] = new String(buffer.array(), offset, length, UTF_8);
+                    buffer.position(buffer.position() + length);
+                } else {
+                    if (scratch.length < length) {
+                        scratch = new byte[length];
+                    }
+                    buffer.get(scratch, 0, length);
+                    stringTable[i] = new String(scratch, 0, length, UTF_8);
+                }
+            }
+            int itemCount = readCount(buffer);
+            ArrayList<NewsItem> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                String id = readReference(buffer, stringTable);
+                String title = readReference(buffer, stringTable);
+                String section = readReference(buffer, stringTable);
+                long publishedMillis = readDate(buffer);
+                String thumbnailURL = readReference(buffer, stringTable);
+                String articleURL = readReference(buffer, stringTable);
+                int authorCount = readCount(buffer);
+                String[] authors = new String[authorCount];
+                for (int author = 0; author < authorCount; author++) {
+                    authors[author] = readReference(buffer, stringTable);
+                }
+                int itemID = readVarint(buffer);
+                items.add(new NewsItem(id, title, authors, section, publishedMillis,
+                        thumbnailURL, articleURL, itemID));
+            }
+            return items;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated news list.", e);
+        }
+    }
+
+    private static void addString(Map<String, Integer> stringTable, String value) {
+        if (value != null && !stringTable.containsKey(value)) {
+            stringTable.put(value, stringTable.size());
+        }
+    }
+
+    private static void writeReference(DataOutputStream out, Map<String, Integer> stringTable,
+                                       String value) throws IOException {
+        writeVarint(out, value == null ? NULL_REFERENCE : stringTable.get(value) + 1);
+    }
+
+    private static String readReference(ByteBuffer buffer, String[] stringTable)
+            throws IOException {
+        int reference = readVarint(buffer);
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+        if (reference > stringTable.length) {
+            throw new IOException("Invalid string reference " + reference);
+        }
+        return stringTable[reference - 1];
+    }
+
+    /**
+     * Reads a count or length, which can never be more than the bytes we have left.
+     */
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int count = readVarint(buffer);
+        if (count > buffer.remaining()) {
+            throw new IOException("Invalid length " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Writes a non-negative int in 7 bit groups, least significant first. The high bit of each
+     * byte is set if more bytes follow.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Invalid varint " + value);
+                }
+                return value;
+            }
+        }
+        throw new IOException("Varint too long.");
+    }
+
+    private static void writeDate(DataOutputStream out, long epochMillis) throws IOException {
+        long value = epochMillis == FeedDates.UNKNOWN
+                ? 0 : ((epochMillis << 1) ^ (epochMillis >> 63)) + 1;
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readDate(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value == 0) {
+                    return FeedDates.UNKNOWN;
+                }
+                value -= 1;
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Date varint too long.");
+    }
+}
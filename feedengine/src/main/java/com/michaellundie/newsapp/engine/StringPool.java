@@ -0,0 +1,41 @@
+package com.michaellundie.newsapp.engine;
+
+import java.util.HashMap;
+
+/**
+ * Hands out a single shared instance for equal strings, so values repeated across many
+ * articles (section and author names) are only held in memory once. Unlike String.intern(),
+ * the pool is bounded: it simply starts again once full. Thread safe.
+ */
+final class StringPool {
+
+    private final int maxSize;
+    private final HashMap<String, String> pool;
+
+    /**
+     * @param maxSize the number of distinct strings we hold before starting again
+     */
+    StringPool(int maxSize) {
+        this.maxSize = maxSize;
+        this.pool = new HashMap<>();
+    }
+
+    /**
+     * @return the pooled instance equal to the given value (which becomes the pooled
+     * instance if we had none). Null if the value is null.
+     */
+    synchronized String get(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (pool.size() >= maxSize) {
+            pool.clear();
+        }
+        pool.put(value, value);
+        return value;
+    }
+}
@@ -0,0 +1,30 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Makes HTTP requests for our feed engine and image loader. Sharing one transport lets both
+ * reuse the same pooled connections, timeouts and stats. Tests can swap in a fake.
+ */
+public interface Transport {
+
+    /**
+     * Makes a GET request. Blocks, so must not be called on a UI thread.
+     * The caller must close the returned response, which releases its connection for reuse.
+     * @param url the request URL
+     * @param headers extra request headers. May be null.
+     * @param cancellation cancels the request, including the reading of its response, by
+     *                     closing its connection. May be null.
+     * @return the response, whatever its status code
+     * @throws IOException if no response was received
+     * @throws FeedCanceledException if the request was cancelled before its response arrived
+     */
+    TransportResponse get(String url, Map<String, String> headers,
+                          CancellationToken cancellation) throws IOException;
+
+    /**
+     * @return the running totals of every request made through this transport
+     */
+    TransportStats getStats();
+}
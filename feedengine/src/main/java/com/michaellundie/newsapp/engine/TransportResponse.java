@@ -0,0 +1,202 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A response received through a {@link Transport}. Gzip encoded bodies are decoded for us,
+ * while the bytes and time it took to receive the response are recorded as it is read.
+ * Must be closed once read.
+ */
+public class TransportResponse implements Closeable {
+
+    /** How much of an unread body we are willing to read, to allow its connection's reuse. */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    private static final Metrics.Histogram LATENCY = Metrics.histogram("http.latency", "ms");
+    private static final Metrics.Histogram BYTES_RECEIVED =
+            Metrics.histogram("http.bytesReceived", "bytes");
+
+    private final String url;
+    private final int statusCode;
+    private final Map<String, String> headers;
+    private final CountingInputStream wireStream;
+    private final TransportStats stats;
+    private final long startNanos;
+    private final CancellationToken cancellation;
+    private final Closeable abort;
+    private InputStream body;
+    private long elapsedMillis = -1;
+
+    /**
+     * @param url the request URL
+     * @param statusCode the HTTP status code
+     * @param headers the response headers. Names are matched case insensitively.
+     * @param wireBody the body as received over the wire. May be null if there is no body.
+     * @param stats where to record this request once closed. May be null.
+     * @param startNanos {@link System#nanoTime()} when the request was sent
+     */
+    public TransportResponse(String url, int statusCode, Map<String, String> headers,
+                             InputStream wireBody, TransportStats stats, long startNanos) {
+        this(url, statusCode, headers, wireBody, stats, startNanos, null, null);
+    }
+
+    /**
+     * @param url the request URL
+     * @param statusCode the HTTP status code
+     * @param headers the response headers. Names are matched case insensitively.
+     * @param wireBody the body as received over the wire. May be null if there is no body.
+     * @param stats where to record this request once closed. May be null.
+     * @param startNanos {@link System#nanoTime()} when the request was sent
+     * @param cancellation the token {@code abort} is registered with. May be null.
+     * @param abort closes the connection if the request is cancelled before this response is
+     *              closed. Unregistered when this response is closed. May be null.
+     */
+    public TransportResponse(String url, int statusCode, Map<String, String> headers,
+                             InputStream wireBody, TransportStats stats, long startNanos,
+                             CancellationToken cancellation, Closeable abort) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.headers = new HashMap<>();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey() != null) {
+                    this.headers.put(header.getKey().toLowerCase(Locale.US), header.getValue());
+                }
+            }
+        }
+        this.wireStream = new CountingInputStream(
+                wireBody != null ? wireBody : new ByteArrayInputStream(new byte[0]));
+        this.stats = stats;
+        this.startNanos = startNanos;
+        this.cancellation = cancellation;
+        this.abort = abort;
+    }
+
+    public String getUrl() { return url; }
+
+    public int getStatusCode() { return statusCode; }
+
+    /**
+     * @param name the header name, in any case
+     * @return the header value, or null if the header wasn't sent
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.US));
+    }
+
+    /**
+     * @return the decoded response body. Closed along with this response.
+     */
+    public synchronized InputStream body() throws IOException {
+        if (body == null) {
+            if ("gzip".equalsIgnoreCase(getHeader("Content-Encoding"))) {
+                body = new GZIPInputStream(wireStream);
+            } else {
+                body = wireStream;
+            }
+        }
+        return body;
+    }
+
+    /**
+     * @return the number of body bytes received over the wire so far (before decompression)
+     */
+    public long getBytesReceived() {
+        return wireStream.count;
+    }
+
+    /**
+     * @return the time from sending the request to closing this response, or -1 if still open
+     */
+    public synchronized long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Reads what is left of a short body, so the connection can be kept alive and reused, and
+     * records this request in our stats. A cancelled response's connection was closed, so there
+     * is nothing left to read.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (elapsedMillis >= 0) {
+            return;
+        }
+        if (cancellation != null) {
+            // From here on, the connection may go back to the pool. It mustn't be closed by a
+            // late cancel.
+            cancellation.unregister(abort);
+        }
+        try {
+            if (cancellation != null && cancellation.isCanceled()) {
+                return;
+            }
+            byte[] buffer = new byte[4096];
+            long drained = 0;
+            int read;
+            while (drained < MAX_DRAIN_BYTES && (read = wireStream.read(buffer)) != -1) {
+                drained += read;
+            }
+        } catch (IOException e) {
+            // The connection will not be reused. Nothing more to do.
+        } finally {
+            // A decoded body wraps our wire stream: closing it closes both, and frees its
+            // decompressor.
+            if (body != null) {
+                body.close();
+            } else {
+                wireStream.close();
+            }
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (stats != null) {
+                stats.record(wireStream.count, elapsedMillis);
+            }
+            LATENCY.record(elapsedMillis);
+            BYTES_RECEIVED.record(wireStream.count);
+        }
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
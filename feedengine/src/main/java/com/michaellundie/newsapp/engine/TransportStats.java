@@ -0,0 +1,38 @@
+package com.michaellundie.newsapp.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals for the requests made through a {@link Transport}. Thread safe.
+ * Per-request figures are available on each {@link TransportResponse}.
+ */
+public class TransportStats {
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong elapsedMillis = new AtomicLong();
+
+    /**
+     * Adds a completed request to our totals.
+     * @param bytes the number of body bytes received over the wire (before decompression)
+     * @param millis the time from sending the request to closing the response
+     */
+    public void record(long bytes, long millis) {
+        requestCount.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+        elapsedMillis.addAndGet(millis);
+    }
+
+    public long getRequestCount() { return requestCount.get(); }
+
+    public long getBytesReceived() { return bytesReceived.get(); }
+
+    public long getElapsedMillis() { return elapsedMillis.get(); }
+
+    @Override
+    public String toString() {
+        return "requests=" + getRequestCount()
+                + " bytes=" + getBytesReceived()
+                + " time=" + getElapsedMillis() + "ms";
+    }
+}
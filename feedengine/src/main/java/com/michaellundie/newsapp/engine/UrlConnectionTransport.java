@@ -0,0 +1,120 @@
+package com.michaellundie.newsapp.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Transport} built on {@link HttpURLConnection}.
+ * Connections are pooled by HttpURLConnection itself, as long as every response body is read to
+ * the end and closed rather than disconnected, which {@link TransportResponse#close()} takes
+ * care of. Responses are requested gzip compressed.
+ * A cancelled request is disconnected, which releases its socket and (on Android) aborts a
+ * blocked connect or read straight away.
+ */
+public class UrlConnectionTransport implements Transport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final TransportStats stats = new TransportStats();
+
+    public UrlConnectionTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param connectTimeoutMillis the timeout for establishing a connection
+     * @param readTimeoutMillis the timeout for each read of a response
+     */
+    public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public TransportResponse get(String url, Map<String, String> headers,
+                                 CancellationToken cancellation) throws IOException {
+        long startNanos = System.nanoTime();
+        final HttpURLConnection urlConnection =
+                (HttpURLConnection) new URL(url).openConnection();
+        urlConnection.setConnectTimeout(connectTimeoutMillis);
+        urlConnection.setReadTimeout(readTimeoutMillis);
+        urlConnection.setRequestMethod("GET");
+        // Asking for gzip ourselves turns off any transparent decoding, so TransportResponse
+        // decodes the body for us. This also lets it count the compressed bytes.
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+
+        Closeable abort = null;
+        if (cancellation != null) {
+            abort = new Closeable() {
+                @Override
+                public void close() {
+                    // Depending on the platform, disconnecting may wait for a read in progress,
+                    // so don't hold up the (often main) thread cancelling us.
+                    Thread disconnect = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            urlConnection.disconnect();
+                        }
+                    }, "transport-abort");
+                    disconnect.setDaemon(true);
+                    disconnect.start();
+                }
+            };
+            cancellation.register(abort);
+        }
+        boolean responded = false;
+        try {
+            int statusCode = urlConnection.getResponseCode();
+            InputStream wireBody;
+            if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                // The error stream is null if the server sent no body.
+                wireBody = urlConnection.getErrorStream();
+            } else {
+                wireBody = urlConnection.getInputStream();
+            }
+
+            Map<String, String> responseHeaders = new HashMap<>();
+            for (Map.Entry<String, List<String>> header
+                    : urlConnection.getHeaderFields().entrySet()) {
+                List<String> values = header.getValue();
+                if (header.getKey() != null && values != null && !values.isEmpty()) {
+                    responseHeaders.put(header.getKey(), values.get(values.size() - 1));
+                }
+            }
+            // The response unregisters our abort once it is closed.
+            TransportResponse response = new TransportResponse(url, statusCode,
+                    responseHeaders, wireBody, stats, startNanos, cancellation, abort);
+            responded = true;
+            return response;
+        } catch (IOException e) {
+            if (cancellation != null) {
+                // We failed because we were disconnected.
+                cancellation.throwIfCanceled();
+            }
+            throw e;
+        } finally {
+            if (!responded && cancellation != null) {
+                cancellation.unregister(abort);
+            }
+        }
+    }
+
+    @Override
+    public TransportStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,86 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks expiry and eviction of {@link CachingFeedEngine}, using a clock we move by hand.
+ */
+public class CachingFeedEngineTest {
+
+    private static final long TTL_MILLIS = 60000;
+
+    private final CountingFeedEngine network = new CountingFeedEngine();
+    private long now = 0;
+    private final CachingFeedEngine engine = new CachingFeedEngine(network, 2, TTL_MILLIS) {
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    };
+
+    @Test
+    public void servesFreshResultsFromMemory() throws IOException {
+        ArrayList<NewsItem> first = engine.fetch(request("newest"), null);
+        engine.fetch(request("relevance"), null);
+        ArrayList<NewsItem> again = engine.fetch(request("newest"), null);
+
+        assertEquals(2, network.fetches);
+        assertEquals(first, again);
+    }
+
+    @Test
+    public void refetchesExpiredResults() throws IOException {
+        engine.fetch(request("newest"), null);
+        now += TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS);
+        engine.fetch(request("newest"), null);
+
+        assertEquals(2, network.fetches);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        engine.fetch(request("newest"), null);
+        engine.fetch(request("relevance"), null);
+        // Newest is now our most recently used, so relevance goes when we add a third.
+        engine.fetch(request("newest"), null);
+        engine.fetch(request("newest").withPage(2), null);
+        assertEquals(3, network.fetches);
+
+        engine.fetch(request("newest"), null);
+        assertEquals(3, network.fetches);
+        engine.fetch(request("relevance"), null);
+        assertEquals(4, network.fetches);
+        assertEquals(2, engine.size());
+    }
+
+    @Test
+    public void callersCannotChangeHeldResults() throws IOException {
+        engine.fetch(request("newest"), null).clear();
+        assertEquals(1, engine.fetch(request("newest"), null).size());
+    }
+
+    private static FeedRequest request(String orderBy) {
+        return new FeedRequest.Builder("example.com", "test").orderBy(orderBy).build();
+    }
+
+    /**
+     * Answers every request with a single article, counting the requests made.
+     */
+    private static class CountingFeedEngine implements FeedEngine {
+        int fetches = 0;
+
+        @Override
+        public ArrayList<NewsItem> fetch(FeedRequest request, CancellationToken cancellation) {
+            fetches++;
+            ArrayList<NewsItem> items = new ArrayList<>();
+            items.add(new NewsItem(request.toUrl(), "Title", null, "Technology", 0, null, null, 0));
+            return items;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stress tests {@link ConcurrentLruCache} from many threads at once.
+ */
+public class ConcurrentLruCacheTest {
+
+    private static final int THREADS = 16;
+    private static final int KEYS = 200;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void loadsEachKeyOnceWhenManyThreadsAskAtOnce() throws Exception {
+        final ConcurrentLruCache<Integer, Object> cache = new ConcurrentLruCache<>(KEYS, 8);
+        final ConcurrentMap<Integer, AtomicInteger> loads = new ConcurrentHashMap<>();
+        final ConcurrentLruCache.Loader<Integer, Object> loader =
+                new ConcurrentLruCache.Loader<Integer, Object>() {
+                    @Override
+                    public Object load(Integer key) {
+                        loads.putIfAbsent(key, new AtomicInteger());
+                        loads.get(key).incrementAndGet();
+                        // Slow enough that other threads ask while we're loading.
+                        Thread.yield();
+                        return new Object();
+                    }
+                };
+
+        List<List<Object>> results = runOnEveryThread(new Task() {
+            @Override
+            public List<Object> run(List<Integer> keys) throws IOException {
+                List<Object> values = new ArrayList<>();
+                for (int key : keys) {
+                    values.add(cache.getOrLoad(key, loader));
+                }
+                return values;
+            }
+        });
+
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals("Loads of " + key, 1, loads.get(key).get());
+        }
+        // Every thread got the one value loaded for each key.
+        for (int key = 0; key < KEYS; key++) {
+            Object expected = cache.get(key);
+            assertNotNull(expected);
+            for (List<Object> values : results) {
+                assertTrue(values.contains(expected));
+            }
+        }
+        assertEquals(KEYS, cache.size());
+    }
+
+    @Test
+    public void accountsForEveryEntryWhileEvicting() throws Exception {
+        final AtomicInteger inserts = new AtomicInteger();
+        final AtomicInteger evictions = new AtomicInteger();
+        // Room for a quarter of our keys, so evictions happen all the time.
+        final ConcurrentLruCache<Integer, Integer> cache =
+                new ConcurrentLruCache<Integer, Integer>(KEYS / 4, 8) {
+                    @Override
+                    protected void entryRemoved(boolean evicted, Integer key, Integer oldValue,
+                                                Integer newValue) {
+                        if (evicted) {
+                            evictions.incrementAndGet();
+                        }
+                    }
+                };
+
+        runOnEveryThread(new Task() {
+            @Override
+            public List<Object> run(List<Integer> keys) {
+                for (int key : keys) {
+                    if (cache.putIfAbsent(key, key) == null) {
+                        inserts.incrementAndGet();
+                    }
+                }
+                return null;
+            }
+        });
+
+        // Nothing lost: every entry we inserted is either still held or was evicted.
+        assertTrue(cache.size() <= cache.maxSize());
+        assertEquals(inserts.get(), cache.size() + evictions.get());
+        int held = 0;
+        for (int key = 0; key < KEYS; key++) {
+            Integer value = cache.get(key);
+            if (value != null) {
+                assertEquals(key, (int) value);
+                held++;
+            }
+        }
+        assertEquals(cache.size(), held);
+    }
+
+    @Test
+    public void keepsAnEntrySmallerThanTheWholeCache() {
+        // Eight segments would give each a share of 12, too small for our entry of 30.
+        ConcurrentLruCache<String, Integer> cache =
+                new ConcurrentLruCache<String, Integer>(100, 8, 30) {
+                    @Override
+                    protected int sizeOf(String key, Integer value) {
+                        return value;
+                    }
+                };
+
+        cache.put("small", 10);
+        cache.put("large", 30);
+
+        assertEquals(30, (int) cache.get("large"));
+        assertEquals(10, (int) cache.get("small"));
+        assertEquals(40, cache.size());
+    }
+
+    @Test
+    public void waitingCallersSeeAFailedLoad() throws Exception {
+        final ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(10, 1);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch fail = new CountDownLatch(1);
+        Future<String> first = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return cache.getOrLoad("key", new ConcurrentLruCache.Loader<String, String>() {
+                    @Override
+                    public String load(String key) throws IOException {
+                        loading.countDown();
+                        try {
+                            fail.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        throw new IOException("Failed");
+                    }
+                });
+            }
+        });
+        loading.await();
+        Future<String> second = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return cache.getOrLoad("key", new ConcurrentLruCache.Loader<String, String>() {
+                    @Override
+                    public String load(String key) {
+                        return "Loaded twice";
+                    }
+                });
+            }
+        });
+        // Give the second caller time to start waiting.
+        Thread.sleep(50);
+        fail.countDown();
+
+        assertFailed(first);
+        assertFailed(second);
+        assertNull(cache.get("key"));
+    }
+
+    private static void assertFailed(Future<String> future) throws InterruptedException {
+        try {
+            fail("Loaded " + future.get());
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private interface Task {
+        List<Object> run(List<Integer> keys) throws IOException;
+    }
+
+    /**
+     * Runs the task on every thread at once, each with every key in its own random order.
+     */
+    private List<List<Object>> runOnEveryThread(final Task task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final List<Integer> keys = new ArrayList<>();
+            for (int key = 0; key < KEYS; key++) {
+                keys.add(key);
+            }
+            Collections.shuffle(keys);
+            futures.add(executor.submit(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() throws Exception {
+                    start.await();
+                    return task.run(keys);
+                }
+            }));
+        }
+        start.countDown();
+        List<List<Object>> results = new ArrayList<>();
+        for (Future<List<Object>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,78 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the streaming {@link FeedParser} against a recorded Guardian search response.
+ */
+public class FeedParserTest {
+
+    private InputStream openFixture() throws IOException {
+        InputStream fixture = getClass().getResourceAsStream("/guardian_search_response.json");
+        if (fixture == null) {
+            throw new IOException("Missing test fixture");
+        }
+        return fixture;
+    }
+
+    @Test
+    public void parsesRecordedResponse() throws IOException {
+        ArrayList<NewsItem> results = FeedParser.parse(openFixture());
+
+        assertEquals(3, results.size());
+
+        NewsItem first = results.get(0);
+        assertEquals("technology/2018/may/20/ai-regulation", first.getId());
+        assertEquals("AI regulation is coming", first.getTitle());
+        assertEquals("Technology", first.getSection());
+        assertEquals(1526811300000L, first.getPublishedMillis());
+        assertEquals("2018-05-20T10:15:00Z", FeedDates.formatIso(first.getPublishedMillis()));
+        assertEquals("https://media.guim.co.uk/a/500.jpg", first.getThumbnailURL());
+        assertEquals(2, first.getAuthors().length);
+        assertEquals("Jane Doe", first.getAuthors()[1]);
+        assertEquals(0, first.getItemID());
+
+        // Missing 'fields' and empty 'tags' should not abort the parse.
+        NewsItem second = results.get(1);
+        assertEquals("", second.getThumbnailURL());
+        assertEquals(0, second.getAuthors().length);
+
+        // JSON nulls are treated the same way as JSONObject.optString() used to.
+        NewsItem third = results.get(2);
+        assertEquals("", third.getTitle());
+        assertEquals("", third.getThumbnailURL());
+        assertEquals(2, third.getItemID());
+
+        // Section names repeated across articles share a single instance.
+        assertSame(first.getSection(), third.getSection());
+    }
+
+    @Test
+    public void keepsArticlesParsedBeforeMalformedInput() throws IOException {
+        String truncated = "{\"response\":{\"results\":[{\"webTitle\":\"One\"},{\"webTitle\":";
+        ArrayList<NewsItem> results = FeedParser.parse(new ByteArrayInputStream(truncated.getBytes(Charset.forName("UTF-8"))));
+
+        assertEquals(1, results.size());
+        assertEquals("One", results.get(0).getTitle());
+    }
+
+    @Test(expected = FeedCanceledException.class)
+    public void cancelledParseThrowsRatherThanReturningPartialResults() throws IOException {
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        FeedParser.parse(openFixture(), cancellation);
+    }
+
+    @Test
+    public void nullStreamReturnsNull() throws IOException {
+        assertNull(FeedParser.parse(null));
+    }
+}
@@ -0,0 +1,69 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips results through a {@link FeedSnapshot} file.
+ */
+public class FeedSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackWrittenResults() {
+        FeedSnapshot snapshot = new FeedSnapshot(new File(folder.getRoot(), "feeds/newest.snap"));
+        ArrayList<NewsItem> items = new ArrayList<>();
+        items.add(new NewsItem("technology/1", "One", new String[] {"Jane Doe"},
+                "Technology", FeedDates.parseIso("2018-05-20T10:15:00Z"),
+                "https://media.guim.co.uk/a/500.jpg", "https://www.theguardian.com/technology/1", 0));
+        items.add(new NewsItem("technology/2", null, null, "Technology",
+                FeedDates.UNKNOWN, "", "https://www.theguardian.com/technology/2", 1));
+
+        assertNull(snapshot.read());
+        snapshot.write(items);
+        ArrayList<NewsItem> restored = snapshot.read();
+
+        assertEquals(2, restored.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).getId(), restored.get(i).getId());
+            assertEquals(items.get(i).getItemID(), restored.get(i).getItemID());
+            assertTrue(items.get(i).hasSameContent(restored.get(i)));
+        }
+        assertNull(restored.get(1).getTitle());
+    }
+
+    @Test
+    public void readsBackPageCount() {
+        FeedSnapshot snapshot = new FeedSnapshot(new File(folder.getRoot(), "paged.snap"));
+        ArrayList<NewsItem> items = new ArrayList<>();
+        items.add(new NewsItem("technology/1", "One", null, "Technology",
+                FeedDates.UNKNOWN, "", "https://www.theguardian.com/technology/1", 0));
+
+        snapshot.write(items, 3);
+        FeedSnapshot.Contents contents = snapshot.readContents();
+
+        assertEquals(3, contents.pageCount);
+        assertEquals(1, contents.items.size());
+        assertEquals("technology/1", contents.items.get(0).getId());
+    }
+
+    @Test
+    public void unreadableSnapshotIsIgnored() throws IOException {
+        File file = folder.newFile("corrupt.snap");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[] {1, 2, 3});
+        out.close();
+
+        assertNull(new FeedSnapshot(file).read());
+    }
+}
@@ -0,0 +1,234 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the conditional request flow in {@link HttpFeedEngine} against a local stand-in server.
+ */
+public class HttpFeedEngineTest {
+
+    private static final String ETAG = "\"feed-v1\"";
+    private static final String BODY = "{\"response\":{\"results\":["
+            + "{\"webTitle\":\"One\",\"sectionName\":\"Technology\"},"
+            + "{\"webTitle\":\"Two\",\"sectionName\":\"Technology\"}]}}";
+
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private ServerSocket serverSocket;
+    /** The If-None-Match header received with each request (empty string if not sent). */
+    private final List<String> receivedValidators =
+            Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void startServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        handle(serverSocket.accept());
+                    } catch (IOException e) {
+                        // Server socket closed.
+                    }
+                }
+            }
+        });
+        serverThread.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * Answers 304 when the client revalidates with our ETag, otherwise sends the full body.
+     */
+    private void handle(Socket socket) throws IOException {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), Charset.forName("UTF-8")));
+            String ifNoneMatch = "";
+            String line = reader.readLine();
+            while (line != null && !line.isEmpty()) {
+                if (line.toLowerCase().startsWith("if-none-match:")) {
+                    ifNoneMatch = line.substring("if-none-match:".length()).trim();
+                }
+                line = reader.readLine();
+            }
+            receivedValidators.add(ifNoneMatch);
+
+            OutputStream out = socket.getOutputStream();
+            if (ETAG.equals(ifNoneMatch)) {
+                out.write(("HTTP/1.1 304 Not Modified\r\nETag: " + ETAG
+                        + "\r\nConnection: close\r\n\r\n").getBytes(Charset.forName("UTF-8")));
+            } else {
+                byte[] body = BODY.getBytes(Charset.forName("UTF-8"));
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nETag: " + ETAG
+                        + "\r\nContent-Length: " + body.length
+                        + "\r\nConnection: close\r\n\r\n").getBytes(Charset.forName("UTF-8")));
+                out.write(body);
+            }
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void notModifiedResponseIsServedFromCache() throws IOException {
+        HttpFeedEngine engine = new HttpFeedEngine(new UrlConnectionTransport(),
+                new FeedResponseCache(cacheFolder.getRoot()));
+        String url = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/search";
+
+        ArrayList<NewsItem> first = engine.fetch(url, null);
+        ArrayList<NewsItem> second = engine.fetch(url, null);
+
+        assertEquals(2, receivedValidators.size());
+        assertEquals("", receivedValidators.get(0));
+        assertEquals(ETAG, receivedValidators.get(1));
+
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals("Two", second.get(1).getTitle());
+    }
+
+    /**
+     * A slow fetch is still writing its body when a second fetch of the same URL completes. Each
+     * must write its own copy, so whichever is committed last is cached whole.
+     */
+    @Test
+    public void overlappingFetchesOfOneUrlCacheACompleteBody() throws Exception {
+        final byte[] slowBody = ("{\"response\":{\"results\":["
+                + "{\"webTitle\":\"One\",\"sectionName\":\"Technology\"},"
+                + "{\"webTitle\":\"Two\",\"sectionName\":\"Technology\"},"
+                + "{\"webTitle\":\"Three\",\"sectionName\":\"Technology\"}]}}")
+                .getBytes(Charset.forName("UTF-8"));
+        final CountDownLatch slowFetchStalled = new CountDownLatch(1);
+        final CountDownLatch releaseSlowFetch = new CountDownLatch(1);
+        final AtomicInteger fullResponses = new AtomicInteger();
+        Transport transport = new Transport() {
+            private final TransportStats stats = new TransportStats();
+
+            @Override
+            public TransportResponse get(String url, Map<String, String> headers,
+                                         CancellationToken cancellation) {
+                if (headers.containsKey("If-None-Match")) {
+                    return new TransportResponse(url, 304, null, null, stats, System.nanoTime());
+                }
+                InputStream body = fullResponses.getAndIncrement() == 0
+                        ? new StallingInputStream(slowBody, slowFetchStalled, releaseSlowFetch)
+                        : new ByteArrayInputStream(BODY.getBytes(Charset.forName("UTF-8")));
+                return new TransportResponse(url, 200,
+                        Collections.singletonMap("ETag", "\"v" + fullResponses.get() + "\""),
+                        body, stats, System.nanoTime());
+            }
+
+            @Override
+            public TransportStats getStats() {
+                return stats;
+            }
+        };
+        final HttpFeedEngine engine = new HttpFeedEngine(transport,
+                new FeedResponseCache(cacheFolder.getRoot()));
+        final String url = "http://example.com/search";
+        final IOException[] slowFailure = new IOException[1];
+        Thread slowFetch = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    engine.fetch(url, null);
+                } catch (IOException e) {
+                    slowFailure[0] = e;
+                }
+            }
+        });
+
+        slowFetch.start();
+        assertTrue(slowFetchStalled.await(5, TimeUnit.SECONDS));
+        assertEquals(2, engine.fetch(url, null).size());
+        releaseSlowFetch.countDown();
+        slowFetch.join(5000);
+
+        assertNull(slowFailure[0]);
+        // A new cache has no parsed results in memory, so it revalidates and reads our body.
+        ArrayList<NewsItem> cached = new HttpFeedEngine(transport,
+                new FeedResponseCache(cacheFolder.getRoot())).fetch(url, null);
+        assertEquals(2, fullResponses.get());
+        assertEquals(3, cached.size());
+        assertEquals("Three", cached.get(2).getTitle());
+    }
+
+    @Test(expected = IOException.class)
+    public void errorResponseThrows() throws IOException {
+        Transport transport = new Transport() {
+            private final TransportStats stats = new TransportStats();
+
+            @Override
+            public TransportResponse get(String url, Map<String, String> headers,
+                                         CancellationToken cancellation) {
+                return new TransportResponse(url, 500, null, null, stats, System.nanoTime());
+            }
+
+            @Override
+            public TransportStats getStats() {
+                return stats;
+            }
+        };
+        new HttpFeedEngine(transport, null).fetch("http://example.com/search", null);
+    }
+
+    /**
+     * Serves the first half of its body, then waits to be released before serving the rest.
+     */
+    private static class StallingInputStream extends InputStream {
+        private final byte[] body;
+        private final CountDownLatch stalled;
+        private final CountDownLatch release;
+        private int position = 0;
+
+        StallingInputStream(byte[] body, CountDownLatch stalled, CountDownLatch release) {
+            this.body = body;
+            this.stalled = stalled;
+            this.release = release;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == body.length / 2) {
+                stalled.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return position < body.length ? body[position++] & 0xff : -1;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks recording and dumping of {@link Metrics}.
+ */
+public class MetricsTest {
+
+    @After
+    public void stopRecording() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void recordsNothingWhileDisabled() {
+        Metrics.counter("test.disabled").increment();
+        Metrics.histogram("test.disabledTime", "us").record(10);
+
+        assertEquals(0, Metrics.startTimer());
+        assertEquals(0, Metrics.counter("test.disabled").get());
+        assertEquals(0, Metrics.histogram("test.disabledTime", "us").getCount());
+    }
+
+    @Test
+    public void histogramPercentilesAreBucketUpperBounds() {
+        Metrics.setEnabled(true);
+        Metrics.Histogram histogram = Metrics.histogram("test.latency", "ms");
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        // 50 falls in the [32, 64) bucket, 99 in [64, 128), capped by our max.
+        assertEquals(63, histogram.getPercentileUpperBound(0.5));
+        assertEquals(100, histogram.getPercentileUpperBound(0.99));
+    }
+
+    @Test
+    public void dumpsHitRatios() {
+        Metrics.setEnabled(true);
+        Metrics.counter("test.cache.hits").add(3);
+        Metrics.counter("test.cache.misses").increment();
+
+        String dump = Metrics.dump();
+
+        assertTrue(dump, dump.contains("test.cache.hits: 3"));
+        assertTrue(dump, dump.contains("test.cache: 75.0% (3 of 4)"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks parallel fetching and the merging of feeds in {@link MultiFeedFetcher}.
+ */
+public class MultiFeedFetcherTest {
+
+    private static final long REQUEST_MILLIS = 300;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private ExecutorService executor;
+
+    @Before
+    public void startExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fetchesInParallel() throws IOException {
+        MultiFeedFetcher fetcher = new MultiFeedFetcher(new SlowFeedEngine(), executor);
+        List<FeedRequest> requests = Arrays.asList(request("science"), request("business"),
+                request("technology"));
+
+        long start = System.nanoTime();
+        List<ArrayList<NewsItem>> results = fetcher.fetchAll(requests, null);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // Close to one request, rather than all three one after the other.
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 2 * REQUEST_MILLIS);
+        assertEquals(3, results.size());
+        assertEquals("science", results.get(0).get(0).getSection());
+        assertEquals("business", results.get(1).get(0).getSection());
+        assertEquals("technology", results.get(2).get(0).getSection());
+    }
+
+    @Test
+    public void keepsResultsOfOtherRequestsWhenOneFails() throws IOException {
+        MultiFeedFetcher fetcher = new MultiFeedFetcher(new SlowFeedEngine(), executor);
+
+        List<ArrayList<NewsItem>> results =
+                fetcher.fetchAll(Arrays.asList(request("science"), request("fail")), null);
+
+        assertEquals("science", results.get(0).get(0).getSection());
+        assertNull(results.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void throwsWhenEveryRequestFails() throws IOException {
+        MultiFeedFetcher fetcher = new MultiFeedFetcher(new SlowFeedEngine(), executor);
+        fetcher.fetchAll(Arrays.asList(request("fail"), request("fail")), null);
+    }
+
+    @Test
+    public void mergesNewestFirstWithoutDuplicates() {
+        List<NewsItem> science = Arrays.asList(article("a", 9), article("shared", 6),
+                article("c", 1));
+        List<NewsItem> business = Arrays.asList(article("d", 8), article("shared", 6),
+                article("f", 5));
+
+        ArrayList<NewsItem> merged =
+                MultiFeedFetcher.merge(Arrays.asList(science, null, business), true);
+
+        assertEquals(Arrays.asList("a", "d", "shared", "f", "c"), ids(merged));
+    }
+
+    @Test
+    public void interleavesFeedsNotOrderedByDate() {
+        List<NewsItem> science = Arrays.asList(article("a", 1), article("b", 9),
+                article("c", 2));
+        List<NewsItem> business = Arrays.asList(article("d", 5), article("a", 1));
+
+        ArrayList<NewsItem> merged =
+                MultiFeedFetcher.merge(Arrays.asList(science, business), false);
+
+        assertEquals(Arrays.asList("a", "d", "b", "c"), ids(merged));
+    }
+
+    @Test
+    public void keepsArticlesWithoutAnId() {
+        // Our parser gives articles without an id an empty one.
+        List<NewsItem> science = Arrays.asList(article("a", 9), article("", 7));
+        List<NewsItem> business = Arrays.asList(article("", 8), article("a", 9));
+
+        ArrayList<NewsItem> merged =
+                MultiFeedFetcher.merge(Arrays.asList(science, business), true);
+
+        assertEquals(Arrays.asList("a", "", ""), ids(merged));
+    }
+
+    private static FeedRequest request(String query) {
+        return new FeedRequest.Builder("example.com", "test").query(query).build();
+    }
+
+    private static NewsItem article(String id, int hour) {
+        return new NewsItem(id, id, null, null, hour * HOUR, null, null, 0);
+    }
+
+    private static List<String> ids(List<NewsItem> items) {
+        List<String> ids = new ArrayList<>();
+        for (NewsItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Takes a while to answer each request, with a single article in the requested section.
+     * The "fail" query fails.
+     */
+    private static class SlowFeedEngine implements FeedEngine {
+        @Override
+        public ArrayList<NewsItem> fetch(FeedRequest request, CancellationToken cancellation)
+                throws IOException {
+            try {
+                Thread.sleep(REQUEST_MILLIS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (request.getQuery().equals("fail")) {
+                throw new IOException("Failed");
+            }
+            ArrayList<NewsItem> items = new ArrayList<>();
+            items.add(new NewsItem(request.getQuery(), request.getQuery(), null,
+                    request.getQuery(), 0, null, null, 0));
+            return items;
+        }
+    }
+}
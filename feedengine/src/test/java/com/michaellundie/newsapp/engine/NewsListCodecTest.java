@@ -0,0 +1,53 @@
+package com.michaellundie.newsapp.engine;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Encodes and decodes article lists with {@link NewsListCodec}.
+ */
+public class NewsListCodecTest {
+
+    private static ArrayList<NewsItem> articles(int count) {
+        ArrayList<NewsItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new NewsItem("technology/" + i, "Headline " + i,
+                    new String[] {"Jane Doe", "Alex Hern"}, "Technology",
+                    FeedDates.parseIso("2018-05-20T10:15:00Z") + i * 60000L, "", "https://www.theguardian.com/technology/" + i, i));
+        }
+        return items;
+    }
+
+    @Test
+    public void sharesRepeatedStrings() throws IOException {
+        ArrayList<NewsItem> items = articles(50);
+        items.add(new NewsItem(null, null, null, null, FeedDates.UNKNOWN, null, null, 50));
+
+        ArrayList<NewsItem> decoded = NewsListCodec.decode(ByteBuffer.wrap(
+                NewsListCodec.encode(items)));
+
+        assertEquals(items.size(), decoded.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).getId(), decoded.get(i).getId());
+            assertEquals(items.get(i).getItemID(), decoded.get(i).getItemID());
+            assertEquals(items.get(i).getPublishedMillis(), decoded.get(i).getPublishedMillis());
+            assertTrue(items.get(i).hasSameContent(decoded.get(i)));
+        }
+        // Every article shares the same decoded section and author strings.
+        assertSame(decoded.get(0).getSection(), decoded.get(49).getSection());
+        assertSame(decoded.get(0).getAuthors()[1], decoded.get(49).getAuthors()[1]);
+        assertNull(decoded.get(50).getTitle());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedData() throws IOException {
+        byte[] encoded = NewsListCodec.encode(articles(3));
+        NewsListCodec.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length - 5)));
+    }
+}
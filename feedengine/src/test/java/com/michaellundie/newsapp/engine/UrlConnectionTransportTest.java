@@ -0,0 +1,165 @@
+package com.michaellundie.newsapp.engine;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks gzip negotiation, stats recording and cancellation of {@link UrlConnectionTransport}
+ * against an in-process server.
+ */
+public class UrlConnectionTransportTest {
+
+    private static final String BODY = "{\"response\":{\"results\":[]}}";
+
+    private HttpServer server;
+    private volatile String receivedAcceptEncoding;
+    /** Ends the trickling response once the test is over. */
+    private final CountDownLatch trickleRelease = new CountDownLatch(1);
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                receivedAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = gzip(BODY.getBytes(Charset.forName("UTF-8")));
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/trickle", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // A slow, long response: an article every 20ms for up to 10 seconds.
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                Charset utf8 = Charset.forName("UTF-8");
+                out.write("{\"response\":{\"results\":[{\"webTitle\":\"0\"}".getBytes(utf8));
+                try {
+                    for (int i = 1; i < 500 && !trickleRelease.await(20, TimeUnit.MILLISECONDS);
+                         i++) {
+                        out.write((",{\"webTitle\":\"" + i + "\"}").getBytes(utf8));
+                        out.flush();
+                    }
+                    out.write("]}}".getBytes(utf8));
+                } catch (InterruptedException | IOException e) {
+                    // The client went away.
+                }
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        trickleRelease.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void decodesGzipAndRecordsWireBytes() throws IOException {
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/search";
+
+        TransportResponse response = transport.get(url, null, null);
+        String body;
+        try {
+            body = readFully(response.body());
+        } finally {
+            response.close();
+        }
+
+        assertEquals("gzip", receivedAcceptEncoding);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(BODY, body);
+        assertEquals(gzip(BODY.getBytes(Charset.forName("UTF-8"))).length,
+                response.getBytesReceived());
+        assertTrue(response.getElapsedMillis() >= 0);
+        assertEquals(1, transport.getStats().getRequestCount());
+        assertEquals(response.getBytesReceived(), transport.getStats().getBytesReceived());
+        try {
+            response.body().read();
+            fail("The decoded body should be closed along with its response");
+        } catch (IOException expected) {
+            // Closed, along with its decompressor.
+        }
+    }
+
+    @Test
+    public void cancelStopsFetchMidResponse() throws IOException {
+        HttpFeedEngine engine = new HttpFeedEngine(new UrlConnectionTransport(), null);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/trickle";
+        final CancellationToken cancellation = new CancellationToken();
+        new Timer(true).schedule(new TimerTask() {
+            @Override
+            public void run() {
+                cancellation.cancel();
+            }
+        }, 200);
+
+        long start = System.nanoTime();
+        try {
+            engine.fetch(url, cancellation);
+            fail("Fetched a cancelled response.");
+        } catch (FeedCanceledException e) {
+            // Expected
+        }
+
+        // Stopped shortly after our cancel, rather than reading all 10 seconds of the response.
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 1000);
+    }
+
+    @Test(expected = FeedCanceledException.class)
+    public void cancelledRequestIsNotSent() throws IOException {
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        new UrlConnectionTransport().get(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/search", null,
+                cancellation);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write(data);
+        gzip.close();
+        return bytes.toByteArray();
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), Charset.forName("UTF-8"));
+    }
+}